@@ -0,0 +1,396 @@
+package bench;
+
+import converter.rdf2ifc.ConversionMetrics;
+import converter.rdf2ifc.IFC2RDFConverter;
+import converter.rdf2ifc.RDFHandlerStreamRDF;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.repository.util.RDFInserter;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.sail.lmdb.config.LmdbStoreConfig;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import utils.BatchLoader;
+import utils.ContextReplacer;
+import utils.LmdbSizingAdvisor;
+import utils.PipelinedRDFHandler;
+import utils.RepositoryUtils;
+
+/**
+ * Runs the scenario of {@code demo.Application} against an embedded repository, so it needs
+ * neither a RDF4J server nor network. The model is converted and loaded once, then every
+ * iteration clears the named graph and loads the model again, or replaces the graph by its
+ * difference with {@code --mode replace}. With {@code --mode atomic} the clear and the load run in
+ * one transaction on one connection, like the original scenario. For every step the wall time, the
+ * statements per second, the latency of the commits and the size of the data directory are
+ * reported.
+ *
+ * <p>Options, all optional:
+ *
+ * <ul>
+ *   <li>{@code --file <ifc>} the IFC model, the Schependomlaan sample by default
+ *   <li>{@code --store lmdb|memory} the store of the repository, lmdb by default
+ *   <li>{@code --profile default|bulk_ingest|query_serving} sizing of the LMDB maps, default is
+ *       the configuration of {@code RepositoryUtils.createRepository(String)}
+ *   <li>{@code --mode clear|atomic|replace} how the graph is loaded again, clear by default
+ *   <li>{@code --iterations <n>} number of reloads, 3 by default
+ *   <li>{@code --batch <n>} statements per transaction, 0 for a single transaction per load, the
+ *       clear is still committed on its own unless {@code --mode atomic}
+ *   <li>{@code --data-dir <dir>} directory of the LMDB store, a temporary one by default, which
+ *       is deleted afterwards
+ *   <li>{@code --out <csv>} also writes the results as CSV
+ * </ul>
+ */
+public class IngestBenchmark {
+
+  private static final String REPOSITORY_ID = "bench_ifc";
+  private static final String GRAPH = "http://example.org/bench";
+
+  private final Options options;
+  private final IFC2RDFConverter converter = new IFC2RDFConverter();
+  private final List<String[]> rows = new ArrayList<String[]>();
+
+  private Path dataDir;
+  private RepositoryUtils repositoryUtils;
+  private Repository memoryRepository;
+  private RepositoryConnection connection;
+  private IRI context;
+
+  private static final String[] COLUMNS = {
+    "iteration",
+    "step",
+    "wall_ms",
+    "statements",
+    "statements_per_s",
+    "commits",
+    "commit_mean_ms",
+    "commit_max_ms",
+    "data_bytes",
+    "growth_bytes"
+  };
+
+  IngestBenchmark(Options options) {
+    this.options = options;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new IngestBenchmark(Options.parse(args)).run();
+  }
+
+  void run() throws Exception {
+    open();
+    try {
+      System.out.println(String.join("\t", COLUMNS));
+      step(0, "load");
+      for (int i = 1; i <= options.iterations; i++) {
+        switch (options.mode) {
+          case ATOMIC:
+            step(i, "reload");
+            break;
+          case REPLACE:
+            step(i, "replace");
+            break;
+          default:
+            step(i, "clear");
+            step(i, "load");
+        }
+      }
+    } finally {
+      close();
+    }
+    if (options.out != null) {
+      try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(options.out))) {
+        out.println(String.join(",", COLUMNS));
+        for (String[] row : rows) {
+          out.println(String.join(",", row));
+        }
+      }
+    }
+  }
+
+  private void open() throws IOException {
+    if (options.memory) {
+      memoryRepository = new SailRepository(new MemoryStore());
+      memoryRepository.init();
+      connection = memoryRepository.getConnection();
+    } else {
+      dataDir =
+          options.dataDir != null ? options.dataDir : Files.createTempDirectory("ingest-bench");
+      repositoryUtils = new RepositoryUtils(dataDir.toFile());
+      if (!repositoryUtils.exists(REPOSITORY_ID)) {
+        LmdbStoreConfig config;
+        if (options.profile == null) {
+          config = new LmdbStoreConfig();
+        } else {
+          long statements = LmdbSizingAdvisor.estimateStatements(options.file);
+          config = new LmdbSizingAdvisor(statements).createConfig(options.profile);
+          System.out.println(
+              "# "
+                  + options.profile
+                  + " maps for about "
+                  + statements
+                  + " statements: triples "
+                  + config.getTripleDBSize()
+                  + " bytes, values "
+                  + config.getValueDBSize()
+                  + " bytes");
+        }
+        repositoryUtils.createRepository(REPOSITORY_ID, config);
+      }
+      connection = repositoryUtils.getConnection(REPOSITORY_ID);
+    }
+    context = connection.getValueFactory().createIRI(GRAPH);
+  }
+
+  private void close() throws IOException {
+    if (connection != null) {
+      connection.close();
+    }
+    if (memoryRepository != null) {
+      memoryRepository.shutDown();
+    }
+    if (repositoryUtils != null) {
+      repositoryUtils.shutDown();
+      if (options.dataDir == null) {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+          for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+            Files.delete(file);
+          }
+        }
+      }
+    }
+  }
+
+  /** Runs one step of the scenario and reports it. */
+  private void step(int iteration, String step) throws Exception {
+    long sizeBefore = dataSize();
+    ConversionMetrics metrics = new ConversionMetrics();
+    long[] commits = new long[2];
+    metrics.addListener(
+        (phase, nanos, m) -> {
+          if (phase == ConversionMetrics.Phase.COMMIT) {
+            commits[0]++;
+            commits[1] = Math.max(commits[1], nanos);
+          }
+        });
+    converter.setMetrics(metrics);
+
+    long start = System.nanoTime();
+    long statements;
+    switch (step) {
+      case "clear":
+        statements = connection.size(context);
+        long commitStart = System.nanoTime();
+        connection.begin();
+        connection.clear(context);
+        connection.commit();
+        metrics.recordPhase(ConversionMetrics.Phase.COMMIT, System.nanoTime() - commitStart);
+        break;
+      case "reload":
+        ReloadingInserter inserter = new ReloadingInserter(metrics);
+        try {
+          convert(inserter);
+        } finally {
+          if (connection.isActive()) {
+            connection.rollback();
+          }
+        }
+        statements = inserter.added;
+        break;
+      case "replace":
+        ContextReplacer replacer =
+            memoryRepository != null
+                ? new ContextReplacer(connection, context)
+                : new ContextReplacer(
+                    connection, context, () -> repositoryUtils.getConnection(REPOSITORY_ID));
+        replacer.setBatchStatements(batchStatements());
+        replacer.setMetrics(metrics);
+        convert(replacer);
+        statements = replacer.getAddedStatements() + replacer.getRemovedStatements();
+        break;
+      default:
+        BatchLoader loader = new BatchLoader(connection, context);
+        loader.setBatchStatements(batchStatements());
+        if (options.batch == 0) {
+          loader.setBatchBytes(Long.MAX_VALUE);
+        }
+        loader.setMetrics(metrics);
+        convert(loader);
+        statements = loader.getCommittedStatements();
+    }
+    long wallNanos = System.nanoTime() - start;
+
+    long sizeAfter = dataSize();
+    long commitNanos = metrics.getPhaseNanos(ConversionMetrics.Phase.COMMIT);
+    String[] row = {
+      Integer.toString(iteration),
+      step,
+      Long.toString(wallNanos / 1_000_000),
+      Long.toString(statements),
+      Long.toString(wallNanos > 0 ? statements * 1_000_000_000L / wallNanos : 0),
+      Long.toString(commits[0]),
+      String.format(
+          Locale.ROOT, "%.1f", commits[0] > 0 ? commitNanos / 1e6 / commits[0] : 0.0),
+      String.format(Locale.ROOT, "%.1f", commits[1] / 1e6),
+      Long.toString(sizeAfter),
+      Long.toString(sizeAfter - sizeBefore)
+    };
+    rows.add(row);
+    System.out.println(String.join("\t", row));
+  }
+
+  private int batchStatements() {
+    return options.batch > 0 ? options.batch : Integer.MAX_VALUE;
+  }
+
+  /** Converts the model into the handler, the commits run while the conversion goes on. */
+  private void convert(RDFHandler handler) throws Exception {
+    try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(handler)) {
+      converter.convert(
+          options.file,
+          new RDFHandlerStreamRDF(pipeline, connection.getValueFactory(), null),
+          null,
+          null,
+          false,
+          false,
+          false);
+    }
+  }
+
+  /**
+   * Clears the graph and loads the model again in a single transaction, which is begun and
+   * committed on the thread of the inserter.
+   */
+  private class ReloadingInserter extends RDFInserter {
+
+    private final ConversionMetrics metrics;
+    private long added = 0;
+
+    ReloadingInserter(ConversionMetrics metrics) {
+      super(connection);
+      this.metrics = metrics;
+      enforceContext(context);
+    }
+
+    @Override
+    public void startRDF() {
+      connection.begin();
+      connection.clear(context);
+      super.startRDF();
+    }
+
+    @Override
+    public void handleStatement(Statement st) {
+      super.handleStatement(st);
+      added++;
+    }
+
+    @Override
+    public void endRDF() {
+      super.endRDF();
+      long commitStart = System.nanoTime();
+      connection.commit();
+      metrics.recordPhase(ConversionMetrics.Phase.COMMIT, System.nanoTime() - commitStart);
+    }
+  }
+
+  /** Size of the files of the LMDB store, -1 for the memory store */
+  private long dataSize() throws IOException {
+    if (dataDir == null) {
+      return -1;
+    }
+    try (Stream<Path> files = Files.walk(dataDir)) {
+      return files
+          .filter(Files::isRegularFile)
+          .mapToLong(
+              file -> {
+                try {
+                  return Files.size(file);
+                } catch (IOException e) {
+                  return 0;
+                }
+              })
+          .sum();
+    }
+  }
+
+  /** The command line options */
+  static class Options {
+
+    /** How the graph is loaded again */
+    enum Mode {
+      CLEAR,
+      ATOMIC,
+      REPLACE
+    }
+
+    Path file = Path.of("IFC", "Week_37_11_sept_IFC_Schependomlaan_incl_planningsdata.ifc");
+    boolean memory = false;
+    LmdbSizingAdvisor.Profile profile;
+    Mode mode = Mode.CLEAR;
+    int iterations = 3;
+    int batch = BatchLoader.DEFAULT_BATCH_STATEMENTS;
+    Path dataDir;
+    Path out;
+
+    static Options parse(String[] args) {
+      Options options = new Options();
+      for (int i = 0; i < args.length; i += 2) {
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing value of " + args[i]);
+        }
+        String value = args[i + 1];
+        switch (args[i]) {
+          case "--file":
+            options.file = Path.of(value);
+            break;
+          case "--store":
+            options.memory = value.equalsIgnoreCase("memory");
+            if (!options.memory && !value.equalsIgnoreCase("lmdb")) {
+              throw new IllegalArgumentException("Unknown store: " + value);
+            }
+            break;
+          case "--profile":
+            options.profile =
+                value.equalsIgnoreCase("default")
+                    ? null
+                    : LmdbSizingAdvisor.Profile.valueOf(value.toUpperCase(Locale.ROOT));
+            break;
+          case "--mode":
+            try {
+              options.mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+              throw new IllegalArgumentException("Unknown mode: " + value);
+            }
+            break;
+          case "--iterations":
+            options.iterations = Integer.parseInt(value);
+            break;
+          case "--batch":
+            options.batch = Integer.parseInt(value);
+            break;
+          case "--data-dir":
+            options.dataDir = Path.of(value);
+            break;
+          case "--out":
+            options.out = Path.of(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+      }
+      return options;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * IFC models of the benchmarks, read from the folder given by the system property {@code ifc.dir}.
+ * A fixture is the name of a sample, e.g. {@code BasicWall}, or a slice of a sample, e.g. {@code
+ * Schependomlaan-20000}. A slice holds the first instances of the sample and all instances they
+ * reference, so it converts without dangling references.
+ */
+final class IfcFixtures {
+
+  private static final Map<String, String> SAMPLES = new HashMap<String, String>();
+
+  static {
+    SAMPLES.put("BasicWall", "BasicWall.ifc");
+    SAMPLES.put(
+        "Schependomlaan", "Week_37_11_sept_IFC_Schependomlaan_incl_planningsdata.ifc");
+  }
+
+  private IfcFixtures() {}
+
+  /**
+   * @param fixture name of the sample, optionally followed by '-' and the number of instances
+   * @return the model, from position 0 to its limit
+   * @throws IOException if the sample cannot be read
+   */
+  static ByteBuffer load(String fixture) throws IOException {
+    int dash = fixture.indexOf('-');
+    String sample = dash < 0 ? fixture : fixture.substring(0, dash);
+    String file = SAMPLES.get(sample);
+    if (file == null) {
+      throw new IllegalArgumentException("Unknown sample: " + sample);
+    }
+    byte[] model = Files.readAllBytes(Path.of(System.getProperty("ifc.dir", "IFC"), file));
+    if (dash < 0) {
+      return ByteBuffer.wrap(model);
+    }
+    return ByteBuffer.wrap(slice(model, Integer.parseInt(fixture.substring(dash + 1))));
+  }
+
+  /** Copies the header and the first instances and their references in file order. */
+  private static byte[] slice(byte[] model, int instances) throws IOException {
+    Map<Long, EntityInstance> all = new HashMap<Long, EntityInstance>();
+    Deque<Long> pending = new ArrayDeque<Long>();
+    try (StepTokenizer tokenizer =
+        new StepTokenizer(ByteBuffer.wrap(model), StandardCharsets.ISO_8859_1)) {
+      EntityInstance instance;
+      while ((instance = tokenizer.next()) != null) {
+        all.put(instance.getLineNum(), instance);
+        if (pending.size() < instances) {
+          pending.add(instance.getLineNum());
+        }
+      }
+    }
+    Set<Long> included = new HashSet<Long>();
+    while (!pending.isEmpty()) {
+      EntityInstance instance = all.get(pending.poll());
+      if (instance == null || !included.add(instance.getLineNum())) {
+        continue;
+      }
+      for (int i = 0; i < instance.getSlotCount(); i++) {
+        if (instance.getKind(i) == EntityInstance.REFERENCE) {
+          pending.add(instance.getReference(i));
+        }
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String text = new String(model, StandardCharsets.ISO_8859_1);
+    int data = text.indexOf("DATA;") + "DATA;".length();
+    out.write(model, 0, data);
+    out.write('\n');
+    try (StepTokenizer tokenizer =
+        new StepTokenizer(ByteBuffer.wrap(model), StandardCharsets.ISO_8859_1)) {
+      EntityInstance instance;
+      while ((instance = tokenizer.nextWithoutAttributes()) != null) {
+        if (included.remove(instance.getLineNum())) {
+          EntityInstance full = all.get(instance.getLineNum());
+          out.write(("#" + full.getLineNum() + "=").getBytes(StandardCharsets.ISO_8859_1));
+          out.write(full.getText());
+          out.write('\n');
+        }
+      }
+    }
+    out.write("ENDSEC;\nEND-ISO-10303-21;\n".getBytes(StandardCharsets.ISO_8859_1));
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.RDFLanguages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The stages of a conversion, each on its own: {@link RDFWriter#readModel()}, {@link
+ * RDFWriter#mapEntries()} and {@link RDFWriter#createInstances()} on a model read in the setup,
+ * {@link RDFWriter#addEnumProperty} and {@link RDFWriter#createLiteralProperty} on the enumeration
+ * and literal values of the model, and the whole conversion into a counting sink and into Turtle,
+ * which adds the serialization. The schema is loaded once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RDFWriterBenchmark {
+
+  private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+  /** The model and its schema */
+  @State(Scope.Benchmark)
+  public static class Model {
+
+    @Param({"BasicWall", "Schependomlaan-2000", "Schependomlaan-20000"})
+    public String fixture;
+
+    ByteBuffer model;
+    Header header;
+    IfcSchema schema;
+    String ontNS;
+    long entities;
+
+    @Setup
+    public void setUp() throws Exception {
+      model = IfcFixtures.load(fixture);
+      header = HeaderParser.parseHeader(model.duplicate());
+      IfcVersion.initDefaultIfcNsMap();
+      IfcVersion version = IfcVersion.getIfcVersion(header);
+      ontNS = IfcVersion.IfcNSMap.get(version);
+      schema = SchemaRegistry.getSchema(version);
+      try (StepTokenizer tokenizer = new StepTokenizer(model, Charset.defaultCharset())) {
+        while (tokenizer.nextWithoutAttributes() != null) {
+          entities++;
+        }
+      }
+    }
+
+    RDFWriter createWriter(boolean merge) {
+      RDFWriter writer = new RDFWriter(schema, model.duplicate(), BASE_URI, ontNS);
+      writer.setRemoveDuplicates(merge);
+      return writer;
+    }
+  }
+
+  /** Whether duplicates are removed, it only matters for the stages after reading */
+  @State(Scope.Benchmark)
+  public static class Merge {
+
+    @Param({"false", "true"})
+    public boolean merge;
+  }
+
+  /**
+   * A model read into the linemap with its references mapped. Mapping them again finds nothing to
+   * redirect, so {@link #mapEntries} measures the check of the references.
+   */
+  @State(Scope.Benchmark)
+  public static class ReadModel {
+
+    RDFWriter writer;
+    long entities;
+
+    @Setup
+    public void setUp(Model model, Merge merge) throws Exception {
+      writer = model.createWriter(merge.merge);
+      writer.readModel();
+      if (merge.merge) {
+        writer.resolveDuplicates();
+      }
+      writer.mapEntries();
+      entities = model.entities;
+    }
+  }
+
+  /** An attribute value of an instance of the model */
+  static class Value {
+
+    final Resource subject;
+    final EntityPlan.Attribute attribute;
+    final String literal;
+    final EntityInstance instance;
+
+    Value(
+        Resource subject, EntityPlan.Attribute attribute, String literal, EntityInstance instance) {
+      this.subject = subject;
+      this.attribute = attribute;
+      this.literal = literal;
+      this.instance = instance;
+    }
+  }
+
+  /** The plain enumeration and literal values of the attributes of the model */
+  @State(Scope.Benchmark)
+  public static class Values {
+
+    RDFWriter writer;
+    final List<Value> enumerations = new ArrayList<Value>();
+    final List<Value> literals = new ArrayList<Value>();
+
+    @Setup
+    public void setUp(Model model) throws Exception {
+      writer = model.createWriter(false);
+      writer.restartEmission(new CountingStreamRDF());
+      EntityPlans plans = model.schema.getEntityPlans(model.ontNS);
+      try (StepTokenizer tokenizer = new StepTokenizer(model.model, Charset.defaultCharset())) {
+        EntityInstance instance;
+        while ((instance = tokenizer.next()) != null) {
+          EntityPlan plan = plans.get(instance.getName());
+          if (plan != null) {
+            addValues(plan, instance);
+          }
+        }
+      }
+    }
+
+    /** Walks the attributes like {@code RDFWriter.fillProperties}, typed values are skipped */
+    private void addValues(EntityPlan plan, EntityInstance instance) throws Exception {
+      Resource subject =
+          ResourceFactory.createResource(BASE_URI + plan.getName() + "_" + instance.getLineNum());
+      int attribute = 0;
+      int end = instance.getAttributeStart() + instance.getAttributeCount();
+      for (int slot = instance.getAttributeStart(); slot < end; slot++) {
+        int kind = instance.getKind(slot);
+        if (kind == EntityInstance.KEYWORD) {
+          continue;
+        }
+        if (kind != EntityInstance.REFERENCE
+            && kind != EntityInstance.LIST
+            && kind != EntityInstance.UNSET
+            && kind != EntityInstance.DERIVED
+            && plan.hasAttribute(attribute)) {
+          Value value =
+              new Value(
+                  subject, plan.getAttribute(attribute), instance.getLiteral(slot), instance);
+          switch (value.attribute.getRangeKind()) {
+            case EntityPlan.ENUMERATION:
+              if (isValidEnumeration(value)) {
+                enumerations.add(value);
+              }
+              break;
+            case EntityPlan.CLASS:
+              literals.add(value);
+              break;
+            default:
+          }
+        }
+        attribute++;
+      }
+    }
+
+    /** Whether the conversion accepts the value, invalid ones would end the benchmark */
+    private boolean isValidEnumeration(Value value) {
+      try {
+        writer.addEnumProperty(
+            value.subject,
+            value.attribute.getProperty(),
+            value.attribute.getRange(),
+            value.literal,
+            value.instance);
+        return true;
+      } catch (IOException | IfcDataFormatException e) {
+        return false;
+      }
+    }
+  }
+
+  @Benchmark
+  public void readModel(Model model, ThroughputCounters counters) {
+    model.createWriter(false).readModel();
+    counters.entities += model.entities;
+  }
+
+  @Benchmark
+  public void mapEntries(ReadModel read, ThroughputCounters counters) throws Exception {
+    read.writer.mapEntries();
+    counters.entities += read.entities;
+  }
+
+  @Benchmark
+  public void createInstances(ReadModel read, ThroughputCounters counters) throws Exception {
+    CountingStreamRDF sink = new CountingStreamRDF();
+    read.writer.restartEmission(sink);
+    read.writer.createInstances();
+    counters.entities += read.entities;
+    counters.triples += sink.getTripleCount();
+  }
+
+  @Benchmark
+  public void addEnumProperty(Values values, ThroughputCounters counters) throws Exception {
+    CountingStreamRDF sink = new CountingStreamRDF();
+    values.writer.restartEmission(sink);
+    for (Value value : values.enumerations) {
+      values.writer.addEnumProperty(
+          value.subject,
+          value.attribute.getProperty(),
+          value.attribute.getRange(),
+          value.literal,
+          value.instance);
+    }
+    counters.values += values.enumerations.size();
+    counters.triples += sink.getTripleCount();
+  }
+
+  @Benchmark
+  public void createLiteralProperty(Values values, ThroughputCounters counters) throws Exception {
+    CountingStreamRDF sink = new CountingStreamRDF();
+    values.writer.restartEmission(sink);
+    for (Value value : values.literals) {
+      values.writer.createLiteralProperty(
+          value.subject,
+          value.attribute.getProperty(),
+          value.attribute.getRange(),
+          value.literal,
+          value.instance);
+    }
+    counters.values += values.literals.size();
+    counters.triples += sink.getTripleCount();
+  }
+
+  @Benchmark
+  public void convert(Model model, Merge merge, ThroughputCounters counters) throws IOException {
+    CountingStreamRDF sink = new CountingStreamRDF();
+    model.createWriter(merge.merge).parseModel2Stream(sink, model.header);
+    counters.entities += model.entities;
+    counters.triples += sink.getTripleCount();
+  }
+
+  @Benchmark
+  public void convertToTurtle(Model model, Merge merge, ThroughputCounters counters)
+      throws IOException {
+    RDFWriter writer = model.createWriter(merge.merge);
+    writer.parseModel2Stream(OutputStream.nullOutputStream(), model.header, RDFLanguages.TURTLE);
+    counters.entities += model.entities;
+    counters.triples += writer.getMetrics().get(ConversionMetrics.Counter.TRIPLES_EMITTED);
+  }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Parsing of the DATA section into entity instances, without and with their attributes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StepTokenizerBenchmark {
+
+  @Param({"BasicWall", "Schependomlaan-20000", "Schependomlaan"})
+  public String fixture;
+
+  private ByteBuffer model;
+
+  @Setup
+  public void setUp() throws IOException {
+    model = IfcFixtures.load(fixture);
+  }
+
+  @Benchmark
+  public void next(ThroughputCounters counters, Blackhole blackhole) throws IOException {
+    try (StepTokenizer tokenizer = new StepTokenizer(model, Charset.defaultCharset())) {
+      EntityInstance instance;
+      while ((instance = tokenizer.next()) != null) {
+        blackhole.consume(instance);
+        counters.entities++;
+      }
+    }
+  }
+
+  @Benchmark
+  public void nextWithoutAttributes(ThroughputCounters counters, Blackhole blackhole)
+      throws IOException {
+    try (StepTokenizer tokenizer = new StepTokenizer(model, Charset.defaultCharset())) {
+      EntityInstance instance;
+      while ((instance = tokenizer.nextWithoutAttributes()) != null) {
+        blackhole.consume(instance);
+        counters.entities++;
+      }
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight recorder event of the conversion of one IFC file, from the header to the last triple. */
+@Name("ifc2rdf.Conversion")
+@Label("IFC Conversion")
+@Category({"IFC2RDF"})
+@Description("Conversion of an IFC file into RDF")
+final class ConversionEvent extends jdk.jfr.Event {
+
+  @Label("IFC Version")
+  String ifcVersion;
+
+  @Label("File Size")
+  @DataAmount
+  long fileSize;
+
+  @Label("Entities")
+  @Description("Instances parsed from the DATA section")
+  long entityCount;
+}
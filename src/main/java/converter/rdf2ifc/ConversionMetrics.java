@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of the phases of conversions and loads. The durations and counters of
+ * several conversions with the same registry add up, except for the peak values. Listeners are
+ * notified when a phase completes. The registry is thread safe.
+ */
+public class ConversionMetrics {
+
+  /** Phases of a conversion and of the load into a repository */
+  public enum Phase {
+    /** Loading the ifcOWL schema, almost no time once it is cached */
+    SCHEMA_LOAD,
+    /** Parsing the header of the IFC file */
+    HEADER_PARSE,
+    /** Parsing the instances of the DATA section */
+    READ_MODEL,
+    /** Removing instances with the same content */
+    RESOLVE_DUPLICATES,
+    /** Checking and redirecting the references */
+    MAP_ENTRIES,
+    /** Generating the triples and writing them to the sink or serializer */
+    CREATE_INSTANCES,
+    /** Both passes over the model in the bounded memory mode */
+    STREAM_MODEL,
+    /** Sending the statements of the batches to the repository */
+    UPLOAD,
+    /** Committing the transactions of the batches */
+    COMMIT
+  }
+
+  /** Counters of a conversion and of the load into a repository */
+  public enum Counter {
+    /** Instances parsed from the DATA section */
+    ENTITIES_PARSED,
+    /** Instances removed as duplicates */
+    DUPLICATES_REMOVED,
+    /** Triples written to the sink */
+    TRIPLES_EMITTED,
+    /** Bytes of the IFC files */
+    BYTES_READ,
+    /** Bytes of the serialized output, after compression */
+    BYTES_WRITTEN,
+    /** Largest number of instances held in memory at once */
+    PEAK_LINEMAP_SIZE,
+    /** Statements committed to a repository */
+    STATEMENTS_COMMITTED
+  }
+
+  /** Receives the duration of every completed phase */
+  public interface Listener {
+
+    /**
+     * @param phase the completed phase
+     * @param nanos duration of the phase
+     * @param metrics the registry with the counters so far
+     */
+    void phaseCompleted(Phase phase, long nanos, ConversionMetrics metrics);
+  }
+
+  private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+  private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+  /** Triples by the prefix of the namespace of their predicate, e.g. ifcowl */
+  private final ConcurrentMap<String, LongAdder> triplesByFamily =
+      new ConcurrentHashMap<String, LongAdder>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+  /**
+   * @param listener receives the duration of every completed phase
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * @param listener a listener added before
+   */
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Adds the duration of a phase and notifies the listeners.
+   *
+   * @param phase the completed phase
+   * @param nanos duration of the phase
+   */
+  public void recordPhase(Phase phase, long nanos) {
+    phaseNanos.addAndGet(phase.ordinal(), nanos);
+    for (Listener listener : listeners) {
+      listener.phaseCompleted(phase, nanos, this);
+    }
+  }
+
+  /**
+   * @param counter a counter
+   * @param delta the amount to add
+   */
+  public void add(Counter counter, long delta) {
+    counters.addAndGet(counter.ordinal(), delta);
+  }
+
+  /**
+   * @param counter a peak counter, e.g. {@link Counter#PEAK_LINEMAP_SIZE}
+   * @param value the current value, it replaces the counter if it is larger
+   */
+  public void max(Counter counter, long value) {
+    counters.accumulateAndGet(counter.ordinal(), value, Math::max);
+  }
+
+  /**
+   * @param family prefix of the namespace of the predicates, e.g. ifcowl
+   * @param delta the number of triples to add
+   */
+  public void addTriples(String family, long delta) {
+    triplesByFamily.computeIfAbsent(family, f -> new LongAdder()).add(delta);
+    add(Counter.TRIPLES_EMITTED, delta);
+  }
+
+  /**
+   * @param phase a phase
+   * @return the total duration of the phase in nanoseconds
+   */
+  public long getPhaseNanos(Phase phase) {
+    return phaseNanos.get(phase.ordinal());
+  }
+
+  /**
+   * @param counter a counter
+   * @return the value of the counter
+   */
+  public long get(Counter counter) {
+    return counters.get(counter.ordinal());
+  }
+
+  /**
+   * @return the number of triples by the prefix of the namespace of their predicate
+   */
+  public Map<String, Long> getTriplesByFamily() {
+    Map<String, Long> result = new TreeMap<String, Long>();
+    triplesByFamily.forEach((family, count) -> result.put(family, count.sum()));
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Phase phase : Phase.values()) {
+      sb.append(phase).append(": ").append(getPhaseNanos(phase) / 1_000_000).append(" ms\n");
+    }
+    for (Counter counter : Counter.values()) {
+      sb.append(counter).append(": ").append(get(counter)).append('\n');
+    }
+    sb.append("TRIPLES_BY_FAMILY: ").append(getTriplesByFamily());
+    return sb.toString();
+  }
+}
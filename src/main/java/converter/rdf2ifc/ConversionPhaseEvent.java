@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a phase of a conversion, see {@link ConversionMetrics.Phase}. The
+ * phases run on the thread of the conversion, so the allocations and pauses of each phase can be
+ * told apart in a recording.
+ */
+@Name("ifc2rdf.ConversionPhase")
+@Label("IFC Conversion Phase")
+@Category({"IFC2RDF"})
+@Description("Phase of the conversion of an IFC file, e.g. parse, map or emit")
+final class ConversionPhaseEvent extends jdk.jfr.Event {
+
+  @Label("Phase")
+  String phase;
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Counts the triples of a conversion and passes them on to another sink, if any. Without a sink it
+ * discards them, e.g. to measure the conversion alone.
+ */
+public class CountingStreamRDF implements StreamRDF {
+
+  private final StreamRDF sink;
+  private long tripleCount = 0;
+
+  /** Creates a sink that only counts the triples. */
+  public CountingStreamRDF() {
+    this(null);
+  }
+
+  /**
+   * @param sink receives the triples or {@code null}
+   */
+  public CountingStreamRDF(StreamRDF sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * @return the number of triples and quads received so far
+   */
+  public long getTripleCount() {
+    return tripleCount;
+  }
+
+  @Override
+  public void start() {
+    if (sink != null) {
+      sink.start();
+    }
+  }
+
+  @Override
+  public void triple(Triple triple) {
+    tripleCount++;
+    if (sink != null) {
+      sink.triple(triple);
+    }
+  }
+
+  @Override
+  public void quad(Quad quad) {
+    tripleCount++;
+    if (sink != null) {
+      sink.quad(quad);
+    }
+  }
+
+  @Override
+  public void base(String base) {
+    if (sink != null) {
+      sink.base(base);
+    }
+  }
+
+  @Override
+  public void prefix(String prefix, String iri) {
+    if (sink != null) {
+      sink.prefix(prefix, iri);
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (sink != null) {
+      sink.finish();
+    }
+  }
+}
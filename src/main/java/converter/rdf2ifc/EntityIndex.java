@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the entity instances of an IFC SPF file that keeps only the type and the position of
+ * each instance, not its attributes. Ids, offsets and type ids are stored in primitive arrays of an
+ * open addressing hash table, so the index takes about 40 bytes per instance regardless of the size
+ * of the instances. Type names are stored once and referred to by their type id.
+ */
+public class EntityIndex {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /** Express ids of the hash slots */
+  private long[] keys;
+  /** Offsets of the statements in the file */
+  private long[] offsets;
+  /** Type id + 1 of the hash slots, 0 marks a free slot */
+  private int[] types;
+
+  private int mask;
+  private int size = 0;
+
+  private final List<String> typeNames = new ArrayList<String>();
+  private final Map<String, Integer> typeIds = new HashMap<String, Integer>();
+
+  public EntityIndex() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize number of instances the index holds without growing
+   */
+  public EntityIndex(int expectedSize) {
+    allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1);
+  }
+
+  /**
+   * @return the number of indexed instances
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds an instance, an instance with the same id is replaced.
+   *
+   * @param id express id
+   * @param offset offset of the statement in the file
+   * @param name entity type name as written in the file, e.g. IFCWALL
+   */
+  public void put(long id, long offset, String name) {
+    int type = typeId(name);
+    int slot = find(id);
+    if (slot < 0) {
+      if ((size + 1) * 2 > keys.length) {
+        rehash(keys.length * 2);
+      }
+      slot = hash(id) & mask;
+      while (types[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = id;
+      size++;
+    }
+    offsets[slot] = offset;
+    types[slot] = type + 1;
+  }
+
+  public boolean containsKey(long id) {
+    return find(id) >= 0;
+  }
+
+  /**
+   * @param id express id
+   * @return the entity type name of the instance or {@code null}, if it is not indexed
+   */
+  public String getName(long id) {
+    int slot = find(id);
+    return slot < 0 ? null : typeNames.get(types[slot] - 1);
+  }
+
+  /**
+   * @param id express id
+   * @return the offset of the statement of the instance or -1, if it is not indexed
+   */
+  public long getOffset(long id) {
+    int slot = find(id);
+    return slot < 0 ? -1 : offsets[slot];
+  }
+
+  private int typeId(String name) {
+    Integer type = typeIds.get(name);
+    if (type == null) {
+      type = typeNames.size();
+      typeNames.add(name);
+      typeIds.put(name, type);
+    }
+    return type;
+  }
+
+  private static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the hash slot of the id or -1. */
+  private int find(long id) {
+    int slot = hash(id) & mask;
+    while (types[slot] != 0) {
+      if (keys[slot] == id) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    offsets = new long[capacity];
+    types = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    long[] oldOffsets = offsets;
+    int[] oldTypes = types;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldTypes[i] != 0) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (types[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        offsets[slot] = oldOffsets[i];
+        types[slot] = oldTypes[i];
+      }
+    }
+  }
+}
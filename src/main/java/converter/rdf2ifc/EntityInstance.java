@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An entity instance of an IFC SPF file with its attributes in a compact form.
+ *
+ * <p>The attributes are typed slots in a single {@code long[]}. A slot holds its kind and either an
+ * express id (references), a start and count of child slots (lists) or a slice of the statement
+ * text (all other values). The children of a list are stored next to each other, so every value is
+ * reached by index without separator or wrapper objects. Values are decoded to strings only when
+ * they are read.
+ */
+public class EntityInstance {
+
+  /** Unset optional attribute: {@code $} */
+  public static final int UNSET = 0;
+  /** Attribute derived in a sub type: {@code *} */
+  public static final int DERIVED = 1;
+  /** Reference to another instance: {@code #12} */
+  public static final int REFERENCE = 2;
+  /** String: {@code 'text'} */
+  public static final int STRING = 3;
+  /** Enumeration or boolean/logical value: {@code .ELEMENT.} */
+  public static final int ENUMERATION = 4;
+  /** Integer or real: {@code 1.5E-3} */
+  public static final int NUMBER = 5;
+  /** Binary: {@code "0FF"} */
+  public static final int BINARY = 6;
+  /** Keyword, i.e. the type of a typed parameter like {@code IFCLABEL('text')} */
+  public static final int KEYWORD = 7;
+  /** List, set or aggregate: {@code (1.,2.,3.)} */
+  public static final int LIST = 8;
+
+  private static final int KIND_SHIFT = 60;
+  private static final int OFFSET_SHIFT = 30;
+  private static final long MASK_30 = (1L << 30) - 1;
+  private static final long MASK_60 = (1L << 60) - 1;
+
+  /** Express id of references that are not a number, it does not match any instance */
+  static final long INVALID_REFERENCE = MASK_60;
+
+  private final long lineNum;
+  private final String name;
+  private final byte[] text;
+  private final long[] slots;
+  private final int attributeStart;
+  private final int attributeCount;
+  private final Charset charset;
+
+  /**
+   * @param lineNum express id
+   * @param name entity type name as written in the file, e.g. IFCWALL
+   * @param text statement text after the '='
+   * @param slots attribute slots
+   * @param attributeStart index of the first slot of the top level attributes
+   * @param attributeCount number of top level attributes
+   * @param charset charset of the text
+   */
+  EntityInstance(
+      long lineNum,
+      String name,
+      byte[] text,
+      long[] slots,
+      int attributeStart,
+      int attributeCount,
+      Charset charset) {
+    this.lineNum = lineNum;
+    this.name = name;
+    this.text = text;
+    this.slots = slots;
+    this.attributeStart = attributeStart;
+    this.attributeCount = attributeCount;
+    this.charset = charset;
+  }
+
+  static long slice(int kind, int offset, int length) {
+    return ((long) kind << KIND_SHIFT) | ((long) offset << OFFSET_SHIFT) | length;
+  }
+
+  static long list(int start, int count) {
+    return ((long) LIST << KIND_SHIFT) | ((long) start << OFFSET_SHIFT) | count;
+  }
+
+  static long reference(long id) {
+    return ((long) REFERENCE << KIND_SHIFT) | (id & MASK_60);
+  }
+
+  /**
+   * @return the express id
+   */
+  public long getLineNum() {
+    return lineNum;
+  }
+
+  /**
+   * @return the entity type name as written in the file, e.g. IFCWALL
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the statement text after the '=', decoded on each call
+   */
+  public String getFullLineAfterNum() {
+    return new String(text, charset);
+  }
+
+  /**
+   * @return the raw statement text after the '=', it must not be modified
+   */
+  byte[] getText() {
+    return text;
+  }
+
+  /**
+   * @return index of the first top level attribute slot
+   */
+  public int getAttributeStart() {
+    return attributeStart;
+  }
+
+  /**
+   * @return number of top level attributes
+   */
+  public int getAttributeCount() {
+    return attributeCount;
+  }
+
+  /**
+   * @return the total number of slots, i.e. of all values on all list levels
+   */
+  public int getSlotCount() {
+    return slots.length;
+  }
+
+  /**
+   * @param slot slot index
+   * @return the kind of the value, one of the constants of this class
+   */
+  public int getKind(int slot) {
+    return (int) (slots[slot] >>> KIND_SHIFT);
+  }
+
+  /**
+   * @param slot index of a {@link #LIST} slot
+   * @return index of the first child slot
+   */
+  public int getListStart(int slot) {
+    return (int) ((slots[slot] >>> OFFSET_SHIFT) & MASK_30);
+  }
+
+  /**
+   * @param slot index of a {@link #LIST} slot
+   * @return number of children
+   */
+  public int getListSize(int slot) {
+    return (int) (slots[slot] & MASK_30);
+  }
+
+  /**
+   * @param slot index of a {@link #REFERENCE} slot
+   * @return the referenced express id
+   */
+  public long getReference(int slot) {
+    return slots[slot] & MASK_60;
+  }
+
+  /** Redirects a reference, e.g. from a removed duplicate to the remaining instance. */
+  void setReference(int slot, long id) {
+    slots[slot] = reference(id);
+  }
+
+  /**
+   * @param slot index of a slot that is neither a {@link #REFERENCE} nor a {@link #LIST}
+   * @return the value as written in the file, e.g. {@code 'text'} or {@code .T.}
+   */
+  public String getToken(int slot) {
+    int offset = offset(slot);
+    return new String(text, offset, length(slot), charset);
+  }
+
+  /**
+   * @param slot index of a slot that is neither a {@link #REFERENCE} nor a {@link #LIST}
+   * @return the value without the quotes of strings and binaries
+   */
+  public String getLiteral(int slot) {
+    int start = offset(slot);
+    int end = start + length(slot);
+    if (start < end && (text[start] == '\'' || text[start] == '"')) {
+      start++;
+    }
+    if (start < end && (text[end - 1] == '\'' || text[end - 1] == '"')) {
+      end--;
+    }
+    return new String(text, start, end - start, charset);
+  }
+
+  /**
+   * Compares the value of a slot with an ASCII token without decoding it.
+   *
+   * @param slot index of a slot that is neither a {@link #REFERENCE} nor a {@link #LIST}
+   * @param token the token, e.g. ".T."
+   * @return whether the value equals the token ignoring case
+   */
+  public boolean tokenEqualsIgnoreCase(int slot, String token) {
+    int offset = offset(slot);
+    int length = length(slot);
+    if (length != token.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (Character.toUpperCase((char) (text[offset + i] & 0xFF))
+          != Character.toUpperCase(token.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int offset(int slot) {
+    return (int) ((slots[slot] >>> OFFSET_SHIFT) & MASK_30);
+  }
+
+  private int length(int slot) {
+    return (int) (slots[slot] & MASK_30);
+  }
+
+  /**
+   * @param slot slot index
+   * @return the value in STEP notation, lists with their children
+   */
+  public String toString(int slot) {
+    StringBuilder sb = new StringBuilder();
+    appendValue(sb, slot);
+    return sb.toString();
+  }
+
+  private void appendValue(StringBuilder sb, int slot) {
+    switch (getKind(slot)) {
+      case REFERENCE:
+        sb.append('#').append(getReference(slot));
+        break;
+      case LIST:
+        sb.append('(');
+        int start = getListStart(slot);
+        for (int i = start; i < start + getListSize(slot); i++) {
+          if (i > start) {
+            sb.append(',');
+          }
+          appendValue(sb, i);
+        }
+        sb.append(')');
+        break;
+      default:
+        sb.append(getToken(slot));
+    }
+  }
+
+  /**
+   * Computes a 128 bit fingerprint of the content, i.e. the type name and the attributes as
+   * tokenized, so instances that differ only in white space have the same fingerprint.
+   *
+   * @param result receives the two halves of the fingerprint
+   */
+  void fingerprint(long[] result) {
+    long h1 = 0x84222325CBF29CE4L;
+    long h2 = 0x9E3779B97F4A7C15L;
+    for (int i = 0; i < name.length(); i++) {
+      h1 = mix1(h1, name.charAt(i));
+      h2 = mix2(h2, name.charAt(i));
+    }
+    h1 = mix1(h1, attributeCount);
+    h2 = mix2(h2, attributeCount);
+    for (int slot = 0; slot < slots.length; slot++) {
+      int kind = getKind(slot);
+      h1 = mix1(h1, kind);
+      h2 = mix2(h2, kind);
+      if (kind == REFERENCE || kind == LIST) {
+        // references and list positions are stored in the slot itself
+        h1 = mix1(h1, slots[slot]);
+        h2 = mix2(h2, slots[slot]);
+      } else {
+        int offset = offset(slot);
+        int end = offset + length(slot);
+        for (int i = offset; i < end; i++) {
+          h1 = mix1(h1, text[i]);
+          h2 = mix2(h2, text[i]);
+        }
+        h1 = mix1(h1, end - offset);
+        h2 = mix2(h2, end - offset);
+      }
+    }
+    result[0] = finish(h1);
+    result[1] = finish(h2);
+  }
+
+  private static long mix1(long h, long value) {
+    return (h ^ value) * 0x100000001B3L;
+  }
+
+  private static long mix2(long h, long value) {
+    return Long.rotateLeft((h ^ value) * 0xC2B2AE3D27D4EB4FL, 31);
+  }
+
+  private static long finish(long h) {
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return h ^ (h >>> 33);
+  }
+
+  /**
+   * Compares the content of two instances like {@link #fingerprint(long[])}, without the express
+   * ids.
+   *
+   * @param other another instance
+   * @return whether both have the same type and the same attributes
+   */
+  boolean hasSameContent(EntityInstance other) {
+    if (!name.equals(other.name)
+        || attributeStart != other.attributeStart
+        || attributeCount != other.attributeCount
+        || slots.length != other.slots.length) {
+      return false;
+    }
+    for (int slot = 0; slot < slots.length; slot++) {
+      int kind = getKind(slot);
+      if (kind != other.getKind(slot)) {
+        return false;
+      }
+      if (kind == REFERENCE || kind == LIST) {
+        if (slots[slot] != other.slots[slot]) {
+          return false;
+        }
+      } else if (!Arrays.equals(
+          text,
+          offset(slot),
+          offset(slot) + length(slot),
+          other.text,
+          other.offset(slot),
+          other.offset(slot) + other.length(slot))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "#" + lineNum + "=" + getFullLineAfterNum();
+  }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import com.buildingsmart.tech.ifcowl.vo.AttributeVO;
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+
+/**
+ * The ontology lookups needed to convert the instances of one entity type. The property, range and
+ * range kind of each attribute are resolved once when the plan is compiled, so the conversion of
+ * the instances does not query the ontology for them. Plans are immutable apart from thread safe
+ * memo tables and are shared by all conversions with the same schema and namespace, see {@link
+ * EntityPlans}. A plan is compiled under the lock of the model by {@link EntityPlans}, misses of
+ * the memo tables query the model under the same lock.
+ */
+public class EntityPlan {
+
+  /** Range is an express:ENUMERATION */
+  public static final int ENUMERATION = 0;
+  /** Range is an express:SELECT */
+  public static final int SELECT = 1;
+  /** Range is a list:OWLList */
+  public static final int LIST = 2;
+  /** Range is any other class, its values are literals or entities */
+  public static final int CLASS = 3;
+  /** Range is not a class or the property does not exist */
+  public static final int OTHER = 4;
+
+  private final EntityVO entity;
+  private final OntClass ontClass;
+  private final Attribute[] attributes;
+
+  EntityPlan(EntityVO entity, OntModel ontModel, RangeClassifier rangeClassifier, String ontNS) {
+    this.entity = entity;
+    this.ontClass = ontModel.getOntClass(ontNS + entity.getName());
+    List<AttributeVO> derived = entity.getDerivedAttributeList();
+    this.attributes = new Attribute[derived != null ? derived.size() : 0];
+    for (int i = 0; i < attributes.length; i++) {
+      attributes[i] = new Attribute(derived.get(i), ontModel, rangeClassifier, ontNS);
+    }
+  }
+
+  /**
+   * @return the entity type name as in the ontology, e.g. IfcWall
+   */
+  public String getName() {
+    return entity.getName();
+  }
+
+  /**
+   * @return the entity of the schema
+   */
+  public EntityVO getEntity() {
+    return entity;
+  }
+
+  /**
+   * @return the class of the entity in the ontology
+   */
+  public OntClass getOntClass() {
+    return ontClass;
+  }
+
+  /**
+   * @return the number of attributes including inherited ones
+   */
+  public int getAttributeCount() {
+    return attributes.length;
+  }
+
+  /**
+   * @param index position of the attribute in the instance
+   * @return whether the entity has an attribute at the position
+   */
+  public boolean hasAttribute(int index) {
+    return index < attributes.length;
+  }
+
+  /**
+   * @param index position of the attribute in the instance
+   * @return the attribute plan
+   */
+  public Attribute getAttribute(int index) {
+    return attributes[index];
+  }
+
+  /** The ontology lookups for one attribute of an entity. */
+  public static class Attribute {
+
+    private final boolean set;
+    private final OntProperty property;
+    private final OntResource range;
+    private final int rangeKind;
+    private final OntResource listValueRange;
+
+    /** Whether instances of a class, keyed by its URI, are valid values of the attribute */
+    private final ConcurrentMap<String, Boolean> accepted =
+        new ConcurrentHashMap<String, Boolean>();
+
+    Attribute(
+        AttributeVO attribute, OntModel ontModel, RangeClassifier rangeClassifier, String ontNS) {
+      this.set = attribute.isSet();
+      this.property = ontModel.getOntProperty(ontNS + attribute.getLowerCaseName());
+      this.range = property != null ? property.getRange() : null;
+      if (range == null || !range.isClass()) {
+        rangeKind = OTHER;
+      } else if (rangeClassifier.isEnumeration(range)) {
+        rangeKind = ENUMERATION;
+      } else if (rangeClassifier.isSelect(range)) {
+        rangeKind = SELECT;
+      } else if (rangeClassifier.isList(range)) {
+        rangeKind = LIST;
+      } else {
+        rangeKind = CLASS;
+      }
+      if (rangeKind == LIST) {
+        // the values of IfcCartesianPoint_List are IfcCartesianPoint
+        String localName = range.getLocalName();
+        listValueRange =
+            ontModel.getOntResource(ontNS + localName.substring(0, localName.length() - 5));
+      } else {
+        listValueRange = null;
+      }
+    }
+
+    /**
+     * @return whether the attribute is an EXPRESS SET
+     */
+    public boolean isSet() {
+      return set;
+    }
+
+    /**
+     * @return the ifcOWL property of the attribute
+     */
+    public OntProperty getProperty() {
+      return property;
+    }
+
+    /**
+     * @return the range of the property
+     */
+    public OntResource getRange() {
+      return range;
+    }
+
+    /**
+     * @return the kind of the range, one of the constants of {@link EntityPlan}
+     */
+    public int getRangeKind() {
+      return rangeKind;
+    }
+
+    /**
+     * @return the range of the list values, if the range is a list, otherwise {@code null}
+     */
+    public OntResource getListValueRange() {
+      return listValueRange;
+    }
+
+    /**
+     * @param target plan of a referenced entity
+     * @return whether the entity is a sub class of the range, i.e. a valid value
+     */
+    public boolean accepts(EntityPlan target) {
+      OntClass targetClass = target.getOntClass();
+      Boolean result = accepted.get(targetClass.getURI());
+      if (result == null) {
+        synchronized (targetClass.getModel()) {
+          result = targetClass.hasSuperClass(range.asClass());
+        }
+        accepted.putIfAbsent(targetClass.getURI(), result);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import com.buildingsmart.tech.ifcowl.ExpressReader;
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntResource;
+
+/**
+ * Compiles and caches the {@link EntityPlan}s of a schema in one ifcOWL namespace. Each plan is
+ * compiled on the first instance of its entity type. The cache is thread safe.
+ *
+ * <p>The ontology is an inference model, which updates its caches when it is queried and is not
+ * safe for concurrent reads. Plans and ontology resources are therefore looked up under a lock on
+ * the model, only the lookups of cached ones run concurrently. The parallel conversion compiles
+ * the plans of a model before it starts its threads, see {@link #compile(EntityInstance, Map)}.
+ */
+public class EntityPlans {
+
+  private final OntModel ontModel;
+  private final Map<String, EntityVO> ent;
+  private final RangeClassifier rangeClassifier;
+  private final String ontNS;
+
+  /** Plans by the entity type name as written in the file, e.g. IFCWALL */
+  private final ConcurrentMap<String, EntityPlan> plans =
+      new ConcurrentHashMap<String, EntityPlan>();
+  /** Ontology resources by their local name, e.g. the classes of the defined types */
+  private final ConcurrentMap<String, OntResource> resources =
+      new ConcurrentHashMap<String, OntResource>();
+  /** Ontology classes by their local name */
+  private final ConcurrentMap<String, OntClass> classes = new ConcurrentHashMap<String, OntClass>();
+
+  /**
+   * @param ontModel the ifcOWL ontology
+   * @param ent the entities of the schema
+   * @param rangeClassifier classifications of the ranges of the schema
+   * @param ontNS namespace of the ifcOWL ontology
+   */
+  public EntityPlans(
+      OntModel ontModel,
+      Map<String, EntityVO> ent,
+      RangeClassifier rangeClassifier,
+      String ontNS) {
+    this.ontModel = ontModel;
+    this.ent = ent;
+    this.rangeClassifier = rangeClassifier;
+    this.ontNS = ontNS;
+  }
+
+  /**
+   * @param name entity type name as written in the file, e.g. IFCWALL
+   * @return the plan of the entity type or {@code null}, if it is no entity of the schema
+   */
+  public EntityPlan get(String name) {
+    EntityPlan plan = plans.get(name);
+    if (plan == null) {
+      EntityVO evo = ent.get(ExpressReader.formatClassName(name));
+      if (evo == null) {
+        return null;
+      }
+      synchronized (ontModel) {
+        plan = plans.get(name);
+        if (plan == null) {
+          plan = new EntityPlan(evo, ontModel, rangeClassifier, ontNS);
+          plans.put(name, plan);
+        }
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * @param type a defined type of the schema, e.g. IfcLabel
+   * @return the class of the type in the ontology or {@code null}
+   */
+  public OntResource getTypeRange(TypeVO type) {
+    return getOntResource(type.getName());
+  }
+
+  /**
+   * @param localName name of a resource in the ifcOWL namespace, e.g. IfcLabel
+   * @return the resource in the ontology or {@code null}
+   */
+  public OntResource getOntResource(String localName) {
+    OntResource resource = resources.get(localName);
+    if (resource == null) {
+      synchronized (ontModel) {
+        resource = ontModel.getOntResource(ontNS + localName);
+      }
+      if (resource != null) {
+        resources.putIfAbsent(localName, resource);
+      }
+    }
+    return resource;
+  }
+
+  /**
+   * @param localName name of a class in the ifcOWL namespace, e.g. IfcLabel
+   * @return the class in the ontology or {@code null}
+   */
+  public OntClass getOntClass(String localName) {
+    OntClass ontClass = classes.get(localName);
+    if (ontClass == null) {
+      synchronized (ontModel) {
+        ontClass = ontModel.getOntClass(ontNS + localName);
+      }
+      if (ontClass != null) {
+        classes.putIfAbsent(localName, ontClass);
+      }
+    }
+    return ontClass;
+  }
+
+  /**
+   * Compiles the plan of the entity type of an instance and looks up the classes of the defined
+   * types of its typed values, e.g. IFCLABEL('text'), so that converting it needs no lookup under
+   * the lock of the model.
+   *
+   * @param instance a parsed instance
+   * @param typ the defined types of the schema by name
+   */
+  public void compile(EntityInstance instance, Map<String, TypeVO> typ) {
+    if (get(instance.getName()) == null) {
+      TypeVO type = typ.get(instance.getName());
+      getOntClass(type != null ? type.getName() : "");
+    }
+    for (int i = 0; i < instance.getSlotCount(); i++) {
+      if (instance.getKind(i) == EntityInstance.KEYWORD) {
+        TypeVO type = typ.get(ExpressReader.formatClassName(instance.getToken(i)));
+        if (type != null) {
+          getTypeRange(type);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Table of entity instances indexed by their express id. Ids are kept as primitive longs in an open
+ * addressing hash table with linear probing, so neither lookups nor insertions box the id or
+ * allocate an entry object. Iteration follows insertion order like a {@link
+ * java.util.LinkedHashMap}: replacing the value of an existing id keeps its position.
+ *
+ * <p>Removed entries leave a gap in the insertion order that is skipped by iteration, so entries
+ * may be removed while iterating.
+ *
+ * @param <V> type of the stored instances
+ */
+public class EntityTable<V> implements Iterable<V> {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /** Express ids of the hash slots */
+  private long[] keys;
+  /** Insertion index + 1 of the hash slots, 0 marks a free slot */
+  private int[] slots;
+  /** Values in insertion order, null for removed entries */
+  private Object[] values;
+  /** Express ids in insertion order */
+  private long[] ids;
+
+  private int mask;
+  private int count = 0;
+  private int size = 0;
+
+  public EntityTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize number of entries the table holds without growing
+   */
+  public EntityTable(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+    keys = new long[capacity];
+    slots = new int[capacity];
+    mask = capacity - 1;
+    values = new Object[Math.max(16, expectedSize)];
+    ids = new long[values.length];
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param id express id
+   * @return the instance with the id or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long id) {
+    int slot = find(id);
+    return slot < 0 ? null : (V) values[slots[slot] - 1];
+  }
+
+  public boolean containsKey(long id) {
+    return find(id) >= 0;
+  }
+
+  /**
+   * Adds an instance, an instance with the same id is replaced at its position.
+   *
+   * @param id express id
+   * @param value the instance, not {@code null}
+   * @return the replaced instance or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long id, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported");
+    }
+    int slot = find(id);
+    if (slot >= 0) {
+      int index = slots[slot] - 1;
+      V old = (V) values[index];
+      values[index] = value;
+      return old;
+    }
+    if (count == values.length) {
+      growValues();
+    }
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    values[count] = value;
+    ids[count] = id;
+    count++;
+    insert(id, count);
+    size++;
+    return null;
+  }
+
+  /**
+   * @param id express id
+   * @return the removed instance or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long id) {
+    int slot = find(id);
+    if (slot < 0) {
+      return null;
+    }
+    int index = slots[slot] - 1;
+    V old = (V) values[index];
+    values[index] = null;
+    size--;
+    deleteSlot(slot);
+    return old;
+  }
+
+  public void clear() {
+    Arrays.fill(slots, 0);
+    Arrays.fill(values, 0, count, null);
+    count = 0;
+    size = 0;
+  }
+
+  /** Iterates the instances in insertion order. */
+  @Override
+  public Iterator<V> iterator() {
+    return new Iterator<V>() {
+      private int next = advance(0);
+
+      private int advance(int i) {
+        while (i < count && values[i] == null) {
+          i++;
+        }
+        return i;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next < count;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public V next() {
+        if (next >= count) {
+          throw new NoSuchElementException();
+        }
+        V value = (V) values[next];
+        next = advance(next + 1);
+        return value;
+      }
+    };
+  }
+
+  private static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the hash slot of the id or -1. */
+  private int find(long id) {
+    int slot = hash(id) & mask;
+    while (slots[slot] != 0) {
+      if (keys[slot] == id) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void insert(long id, int indexPlusOne) {
+    int slot = hash(id) & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = id;
+    slots[slot] = indexPlusOne;
+  }
+
+  /** Frees a slot and moves following entries of the probe sequence back into the gap. */
+  private void deleteSlot(int slot) {
+    int gap = slot;
+    int i = (gap + 1) & mask;
+    while (slots[i] != 0) {
+      int home = hash(keys[i]) & mask;
+      // move the entry if its home slot is not within (gap, i]
+      if (((i - home) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        slots[gap] = slots[i];
+        gap = i;
+      }
+      i = (i + 1) & mask;
+    }
+    slots[gap] = 0;
+  }
+
+  private void growValues() {
+    // removed entries are dropped while growing, which keeps the insertion order dense
+    int newLength = size * 2 > values.length ? values.length * 2 : values.length;
+    Object[] newValues = new Object[newLength];
+    long[] newIds = new long[newLength];
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      if (values[i] != null) {
+        newValues[n] = values[i];
+        newIds[n] = ids[i];
+        n++;
+      }
+    }
+    values = newValues;
+    ids = newIds;
+    count = n;
+    rehash(keys.length);
+  }
+
+  private void rehash(int capacity) {
+    keys = new long[capacity];
+    slots = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < count; i++) {
+      if (values[i] != null) {
+        insert(ids[i], i + 1);
+      }
+    }
+  }
+}
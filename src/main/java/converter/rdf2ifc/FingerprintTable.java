@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+/**
+ * Table of entity instances keyed by a 128 bit fingerprint of their content, see {@link
+ * EntityInstance#fingerprint(long[])}. Fingerprints are stored in primitive arrays of an open
+ * addressing hash table, so the table takes less than 50 bytes per instance instead of a copy of its
+ * statement text.
+ */
+public class FingerprintTable {
+
+  /** First halves of the fingerprints of the hash slots */
+  private long[] high;
+  /** Second halves of the fingerprints of the hash slots */
+  private long[] low;
+  /** Instances of the hash slots, null marks a free slot */
+  private EntityInstance[] values;
+
+  private int mask;
+  private int size = 0;
+
+  /**
+   * @param expectedSize number of instances the table holds without growing
+   */
+  public FingerprintTable(int expectedSize) {
+    allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1);
+  }
+
+  /**
+   * @return the number of instances in the table
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds an instance, unless there is one with the same content already. Instances with the same
+   * fingerprint are compared by {@link EntityInstance#hasSameContent(EntityInstance)}, so an
+   * instance whose fingerprint collides with a different one is added to the next free slot and
+   * later duplicates of either are found.
+   *
+   * @param fingerprint the two halves of the fingerprint of the instance
+   * @param instance the instance
+   * @return the instance with the same content or {@code null}, if the instance was added
+   */
+  public EntityInstance putIfAbsent(long[] fingerprint, EntityInstance instance) {
+    int slot = (int) fingerprint[0] & mask;
+    while (values[slot] != null) {
+      if (high[slot] == fingerprint[0]
+          && low[slot] == fingerprint[1]
+          && values[slot].hasSameContent(instance)) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    high[slot] = fingerprint[0];
+    low[slot] = fingerprint[1];
+    values[slot] = instance;
+    size++;
+    if (size * 2 > values.length) {
+      rehash(values.length * 2);
+    }
+    return null;
+  }
+
+  private void allocate(int capacity) {
+    high = new long[capacity];
+    low = new long[capacity];
+    values = new EntityInstance[capacity];
+    mask = capacity - 1;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldHigh = high;
+    long[] oldLow = low;
+    EntityInstance[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = (int) oldHigh[i] & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        high[slot] = oldHigh[i];
+        low[slot] = oldLow[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
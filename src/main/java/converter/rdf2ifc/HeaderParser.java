@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
@@ -64,6 +65,17 @@ public class HeaderParser {
     return parseHeader(reader);
   }
 
+  /**
+   * parse IFC file to get header data
+   *
+   * @param buffer content of IFC file, e.g. a memory mapped file. Its position is not changed.
+   * @return
+   * @throws IOException
+   */
+  public static Header parseHeader(ByteBuffer buffer) throws IOException {
+    return parseHeader(new ByteBufferInputStream(buffer));
+  }
+
   /**
    * parse IFC file to get header data
    *
@@ -14,23 +14,25 @@
  ******************************************************************************/
 package converter.rdf2ifc;
 
-import com.buildingsmart.tech.ifcowl.vo.EntityVO;
-import com.buildingsmart.tech.ifcowl.vo.TypeVO;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.Reader;
-import java.util.Map;
-import org.apache.jena.ontology.OntModel;
-import org.apache.jena.ontology.OntModelSpec;
-import org.apache.jena.rdf.model.ModelFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
 
 /**
- * The class to convert from IFC STEP file to RDF file.
+ * The class to convert from IFC STEP file to RDF file. The ifcOWL schema of each IFC version is
+ * loaded on its first conversion and shared by all later ones, see {@link SchemaRegistry}.
  *
  * @author Chi Zhang
  */
@@ -39,11 +41,139 @@ public class IFC2RDFConverter {
   /** Default namespace for the output RDF file. */
   public final String DEFAULT_PATH = "http://linkedbuildingdata.net/ifc/resources/";
 
+  /** Number of threads used to parse the DATA section, 1 parses on the calling thread. */
+  private int parseParallelism = 1;
+
+  public int getParseParallelism() {
+    return parseParallelism;
+  }
+
+  /**
+   * Sets the number of threads used to parse the DATA section of models given as {@link Path},
+   * {@link FileChannel} or {@link ByteBuffer}. The default of 1 parses on the calling thread.
+   *
+   * @param parseParallelism number of threads, e.g. {@code
+   *     Runtime.getRuntime().availableProcessors()}
+   */
+  public void setParseParallelism(int parseParallelism) {
+    if (parseParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + parseParallelism);
+    }
+    this.parseParallelism = parseParallelism;
+  }
+
+  /** Number of threads used to generate the triples, 1 generates them on the calling thread. */
+  private int emitParallelism = 1;
+
+  public int getEmitParallelism() {
+    return emitParallelism;
+  }
+
+  /**
+   * Sets the number of threads used to generate the triples of the instances. The instances are
+   * converted in chunks of consecutive instances and the triples are written in the order of the
+   * instances. The default of 1 generates them on the calling thread.
+   *
+   * <p>The sequential conversion shares the resources of equal values of literal lists across the
+   * whole model, the parallel one only within a chunk. With more than one thread the output has
+   * therefore more generated resources and triples, and other generated ids, than the sequential
+   * output. It describes the same model and is the same for any number of threads above 1.
+   *
+   * @param emitParallelism number of threads, e.g. {@code
+   *     Runtime.getRuntime().availableProcessors()}
+   */
+  public void setEmitParallelism(int emitParallelism) {
+    if (emitParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + emitParallelism);
+    }
+    this.emitParallelism = emitParallelism;
+  }
+
+  /** Whether the model is converted in two passes that keep only an index of it in memory. */
+  private boolean boundedMemory = false;
+
+  public boolean isBoundedMemory() {
+    return boundedMemory;
+  }
+
+  /**
+   * Sets whether the model is converted in two passes instead of reading all instances into memory
+   * first. The first pass indexes the type and position of every instance, the second converts the
+   * instances one at a time. The heap then grows with the number of instances instead of the size
+   * of the model, at the cost of parsing the model twice. Duplicates are not removed in this mode,
+   * and equal values of literal lists are shared within an instance only, so there are more
+   * generated resources than in the default conversion.
+   *
+   * @param boundedMemory whether to use the two pass conversion, default is false
+   */
+  public void setBoundedMemory(boolean boundedMemory) {
+    this.boundedMemory = boundedMemory;
+  }
+
+  /** Syntax of the output, if no Jena language is given to convert. */
+  private OutputFormat outputFormat = OutputFormat.TURTLE;
+
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  /**
+   * Sets the syntax written by the convert methods that are given no {@link Lang}. The default is
+   * Turtle. N-Triples and N-Quads are faster to write and can be split into parts that are loaded
+   * in parallel, RDF4J binary RDF is the fastest to load into RDF4J. The header comment with the
+   * base URI and the imported ontology is written only in syntaxes with comments.
+   *
+   * @param outputFormat the output syntax
+   */
+  public void setOutputFormat(OutputFormat outputFormat) {
+    this.outputFormat = outputFormat;
+  }
+
+  /** Compression of the output stream. */
+  private OutputCompression outputCompression = OutputCompression.NONE;
+
+  public OutputCompression getOutputCompression() {
+    return outputCompression;
+  }
+
+  /**
+   * Sets the compression of the output written by the convert methods. The output is compressed
+   * while it is written, the given output stream receives the compressed bytes and is not closed.
+   * The default is no compression.
+   *
+   * @param outputCompression the compression
+   */
+  public void setOutputCompression(OutputCompression outputCompression) {
+    this.outputCompression = outputCompression;
+  }
+
+  /** Timings and counters of the conversions of this converter. */
+  private ConversionMetrics metrics = new ConversionMetrics();
+
+  public ConversionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the registry that receives the timings and counters of the conversions, e.g. one shared
+   * with a {@code utils.BatchLoader} to see the load as well. The durations and counters of all
+   * conversions add up.
+   *
+   * @param metrics the registry
+   */
+  public void setMetrics(ConversionMetrics metrics) {
+    if (metrics == null) {
+      throw new IllegalArgumentException("Metrics must not be null");
+    }
+    this.metrics = metrics;
+  }
+
   /**
    * @param inputModel path of the IFC STEP file.
    * @param outputStream outputStream Output stream of the RDF file.
    * @param lang The generated RDF syntax. Supported formats are Turtle, N-triples. It is based on
-   *     the StreamRDFWriter in Jena https://jena.apache.org/documentation/io/streaming-io.html.
+   *     the StreamRDFWriter in Jena https://jena.apache.org/documentation/io/streaming-io.html. If
+   *     it is null, the format set by {@link #setOutputFormat(OutputFormat)} is written.
    * @param ifcVersion Set the IFC version of the input IFC file, supported IFC versions are
    *     IFC2X3_TC1, IFC2X3_FINAL, IFC4, IFC4X1_RC3, IFC4_ADD1 and IFC4_ADD2. If it is null, the
    *     converter parses the header in IFC file to automatically determine the IFC version. Only
@@ -61,7 +191,6 @@ public class IFC2RDFConverter {
    *     in the resources folder and use it. Therefore the corresponding ifcOWL file must be updated
    *     before, otherwise it will still use the old namespace.
    */
-  @SuppressWarnings("unchecked")
   public void convert(
       String inputModel,
       OutputStream outputStream,
@@ -72,79 +201,245 @@ public class IFC2RDFConverter {
       boolean merge,
       boolean updateNS)
       throws Exception {
+    convert(
+        ByteBuffer.wrap(inputModel.getBytes()),
+        outputStream,
+        lang,
+        ifcVersion,
+        baseURI,
+        expid,
+        merge,
+        updateNS);
+  }
+
+  /**
+   * Converts the IFC STEP file at the given path. The file is memory mapped, so the heap used by
+   * the conversion does not depend on the size of the file. See {@link #convert(String,
+   * OutputStream, Lang, String, String, boolean, boolean, boolean)} for the other parameters.
+   *
+   * @param inputModel path of the IFC STEP file.
+   */
+  public void convert(
+      Path inputModel,
+      OutputStream outputStream,
+      Lang lang,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS)
+      throws Exception {
+    try (FileChannel channel = FileChannel.open(inputModel, StandardOpenOption.READ)) {
+      convert(channel, outputStream, lang, ifcVersion, baseURI, expid, merge, updateNS);
+    }
+  }
+
+  /**
+   * Converts the IFC STEP file read from the given channel. The whole file is memory mapped once
+   * and shared by the header and the data parser. The channel is not closed. See {@link
+   * #convert(String, OutputStream, Lang, String, String, boolean, boolean, boolean)} for the other
+   * parameters.
+   *
+   * @param inputModel channel of the IFC STEP file, at most 2 GB.
+   */
+  public void convert(
+      FileChannel inputModel,
+      OutputStream outputStream,
+      Lang lang,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS)
+      throws Exception {
+    convert(map(inputModel), outputStream, lang, ifcVersion, baseURI, expid, merge, updateNS);
+  }
+
+  /**
+   * Converts the IFC STEP file held by the given buffer. The buffer is parsed in place from its
+   * position to its limit without copying it. See {@link #convert(String, OutputStream, Lang,
+   * String, String, boolean, boolean, boolean)} for the other parameters.
+   *
+   * @param inputModel content of the IFC STEP file, e.g. a memory mapped file.
+   */
+  public void convert(
+      ByteBuffer inputModel,
+      OutputStream outputStream,
+      Lang lang,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS)
+      throws Exception {
+    if (baseURI == null) {
+      baseURI = this.DEFAULT_PATH;
+    }
+    ConversionEvent event = new ConversionEvent();
+    event.fileSize = inputModel.remaining();
+    event.begin();
+    long start = System.nanoTime();
+    Header header = HeaderParser.parseHeader(inputModel);
+    metrics.recordPhase(ConversionMetrics.Phase.HEADER_PARSE, System.nanoTime() - start);
+    RDFWriter conv =
+        createWriter(inputModel, header, ifcVersion, baseURI, expid, merge, updateNS, event);
+    if (lang == null) {
+      lang = outputFormat.getLang();
+    }
+    CountingOutputStream counting = new CountingOutputStream(outputStream);
+    try (OutputStream out = outputCompression.wrap(counting)) {
+      StreamRDF sink;
+      if (lang == null) {
+        sink = new RDFHandlerStreamRDF(Rio.createWriter(RDFFormat.BINARY, out));
+      } else {
+        if (hasComments(lang)) {
+          String ontNS = conv.getOntNS();
+          String s = "# baseURI: " + baseURI;
+          s += "\r\n# imports: " + ontNS.substring(0, ontNS.length() - 1) + "\r\n\r\n";
+          out.write(s.getBytes());
+        }
+        sink = StreamRDFWriter.getWriterStream(out, lang);
+        if (RDFLanguages.isQuads(lang)) {
+          // the triples of the model form one named graph
+          sink = StreamRDFLib.extendTriplesToQuads(NodeFactory.createURI(baseURI), sink);
+        }
+      }
+      conv.parseModel2Stream(sink, header);
+    } finally {
+      metrics.add(ConversionMetrics.Counter.BYTES_WRITTEN, counting.count);
+    }
+    event.entityCount = conv.getEntityCount();
+    event.commit();
+  }
+
+  /** Whether the header comment can be written in the syntax. */
+  private static boolean hasComments(Lang lang) {
+    return lang.equals(RDFLanguages.TURTLE)
+        || lang.equals(RDFLanguages.NTRIPLES)
+        || lang.equals(RDFLanguages.NQUADS)
+        || lang.equals(RDFLanguages.TRIG);
+  }
+
+  /**
+   * Converts the IFC STEP file at the given path into a sink instead of a serialization, e.g. a
+   * {@link RDFHandlerStreamRDF} that adds the triples to a repository connection. See {@link
+   * #convert(String, OutputStream, Lang, String, String, boolean, boolean, boolean)} for the other
+   * parameters.
+   *
+   * @param inputModel path of the IFC STEP file.
+   * @param sink receives the triples, it is started and finished by the conversion.
+   */
+  public void convert(
+      Path inputModel,
+      StreamRDF sink,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS)
+      throws Exception {
+    try (FileChannel channel = FileChannel.open(inputModel, StandardOpenOption.READ)) {
+      convert(map(channel), sink, ifcVersion, baseURI, expid, merge, updateNS);
+    }
+  }
+
+  /**
+   * Converts the IFC STEP file held by the given buffer into a sink. See {@link #convert(Path,
+   * StreamRDF, String, String, boolean, boolean, boolean)}.
+   *
+   * @param inputModel content of the IFC STEP file, e.g. a memory mapped file.
+   * @param sink receives the triples, it is started and finished by the conversion.
+   */
+  public void convert(
+      ByteBuffer inputModel,
+      StreamRDF sink,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS)
+      throws Exception {
     if (baseURI == null) {
       baseURI = this.DEFAULT_PATH;
     }
-    OntModel schema = null;
-    InputStream in = null;
+    ConversionEvent event = new ConversionEvent();
+    event.fileSize = inputModel.remaining();
+    event.begin();
+    long start = System.nanoTime();
+    Header header = HeaderParser.parseHeader(inputModel);
+    metrics.recordPhase(ConversionMetrics.Phase.HEADER_PARSE, System.nanoTime() - start);
+    RDFWriter conv =
+        createWriter(inputModel, header, ifcVersion, baseURI, expid, merge, updateNS, event);
+    conv.parseModel2Stream(sink, header);
+    event.entityCount = conv.getEntityCount();
+    event.commit();
+  }
+
+  private static ByteBuffer map(FileChannel inputModel) throws IOException {
+    long size = inputModel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException(
+          "IFC model of " + size + " bytes exceeds the 2 GB limit of a memory mapping");
+    }
+    return inputModel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+  }
+
+  private RDFWriter createWriter(
+      ByteBuffer inputModel,
+      Header header,
+      String ifcVersion,
+      String baseURI,
+      boolean expid,
+      boolean merge,
+      boolean updateNS,
+      ConversionEvent event)
+      throws Exception {
     if (updateNS) {
       IfcVersion.initIfcNsMap();
     } else {
       IfcVersion.initDefaultIfcNsMap();
     }
     IfcVersion version = null;
-    Header header = HeaderParser.parseHeader(new ByteArrayInputStream(inputModel.getBytes()));
     if (ifcVersion != null) {
       version = IfcVersion.getIfcVersion(ifcVersion);
     } else {
       version = IfcVersion.getIfcVersion(header);
     }
+    event.ifcVersion = version.getLabel();
     String ontNS = IfcVersion.IfcNSMap.get(version);
     // CONVERSION
-    schema = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM_TRANS_INF);
-    in =
-        getClass()
-            .getClassLoader()
-            .getResourceAsStream("schema/ifc2rdf/" + version.getLabel() + ".ttl");
-    Reader reader = new InputStreamReader(in);
-    schema.read(reader, null, "TTL");
-    String expressTtl = "schema/ifc2rdf/express.ttl";
-    InputStream expressTtlStream = getClass().getClassLoader().getResourceAsStream(expressTtl);
-    OntModel expressModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM_TRANS_INF);
-    expressModel.read(expressTtlStream, null, "TTL");
-    String rdfList = "schema/ifc2rdf/list.ttl";
-    InputStream rdfListStream = getClass().getClassLoader().getResourceAsStream(rdfList);
-    OntModel listModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM_TRANS_INF);
-    listModel.read(rdfListStream, null, "TTL");
-    schema.add(expressModel);
-    schema.add(listModel);
-    // Model im = om.getDeductionsModel();
-    InputStream fis =
-        getClass()
-            .getClassLoader()
-            .getResourceAsStream("schema/ifc2rdf/ent" + version.getLabel() + ".ser");
-    ObjectInputStream ois = new ObjectInputStream(fis);
-    Map<String, EntityVO> ent = null;
-    ent = (Map<String, EntityVO>) ois.readObject();
-    ois.close();
-    fis =
-        getClass()
-            .getClassLoader()
-            .getResourceAsStream("schema/ifc2rdf/typ" + version.getLabel() + ".ser");
-    ois = new ObjectInputStream(fis);
-    Map<String, TypeVO> typ = null;
-    typ = (Map<String, TypeVO>) ois.readObject();
-    ois.close();
-    RDFWriter conv =
-        new RDFWriter(
-            schema,
-            expressModel,
-            listModel,
-            new ByteArrayInputStream(inputModel.getBytes()),
-            baseURI,
-            ent,
-            typ,
-            ontNS);
+    long start = System.nanoTime();
+    IfcSchema schema = SchemaRegistry.getSchema(version);
+    metrics.recordPhase(ConversionMetrics.Phase.SCHEMA_LOAD, System.nanoTime() - start);
+    RDFWriter conv = new RDFWriter(schema, inputModel, baseURI, ontNS);
     conv.setRemoveDuplicates(merge);
     conv.setExpIdAsProperty(expid);
-    if (lang == null) {
-      lang = RDFLanguages.TURTLE;
+    conv.setParseParallelism(parseParallelism);
+    conv.setEmitParallelism(emitParallelism);
+    conv.setBoundedMemory(boundedMemory);
+    conv.setMetrics(metrics);
+    return conv;
+  }
+
+  /** Counts the bytes written to the output stream. */
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    private long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
     }
-    String s = "# baseURI: " + baseURI;
-    s += "\r\n# imports: " + ontNS.substring(0, ontNS.length() - 1) + "\r\n\r\n";
-    outputStream.write(s.getBytes());
-    outputStream.flush();
-    conv.parseModel2Stream(outputStream, header, lang);
-    in.close();
   }
 }
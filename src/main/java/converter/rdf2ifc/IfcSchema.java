@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * The ifcOWL ontology of one IFC version together with the EXPRESS and list ontologies and the
+ * entity and type maps of the schema. A schema is loaded once and only read afterwards, so it can
+ * be shared by any number of conversions, see {@link SchemaRegistry}.
+ */
+public class IfcSchema {
+
+  private static final String SCHEMA_PATH = "schema/ifc2rdf/";
+  private static final String EXPRESS_NS = "https://w3id.org/express#";
+  private static final String LIST_NS = "https://w3id.org/list#";
+
+  private final IfcVersion version;
+  private final OntModel ontModel;
+  private final OntModel expressModel;
+  private final OntModel listModel;
+  private final Map<String, EntityVO> ent;
+  private final Map<String, TypeVO> typ;
+  private final RangeClassifier rangeClassifier;
+  private final Resource hasExpressID;
+  private final OntProperty hasContents;
+  private final OntProperty hasNext;
+  private final Resource logicalFalse;
+  private final Resource logicalTrue;
+  private final Resource logicalUnknown;
+  /** Entity plans by the ifcOWL namespace they were compiled for */
+  private final ConcurrentMap<String, EntityPlans> entityPlans =
+      new ConcurrentHashMap<String, EntityPlans>();
+
+  private IfcSchema(
+      IfcVersion version,
+      OntModel ontModel,
+      OntModel expressModel,
+      OntModel listModel,
+      Map<String, EntityVO> ent,
+      Map<String, TypeVO> typ) {
+    this.version = version;
+    this.ontModel = ontModel;
+    this.expressModel = expressModel;
+    this.listModel = listModel;
+    this.ent = Collections.unmodifiableMap(ent);
+    this.typ = Collections.unmodifiableMap(typ);
+    this.rangeClassifier = new RangeClassifier(expressModel, listModel);
+    // looked up before the schema is shared, querying an inference model is not thread safe
+    this.hasExpressID = ontModel.getResource(EXPRESS_NS + "hasExpressID");
+    this.hasContents = listModel.getOntProperty(LIST_NS + "hasContents");
+    this.hasNext = listModel.getOntProperty(LIST_NS + "hasNext");
+    this.logicalFalse = expressModel.getResource(EXPRESS_NS + "FALSE");
+    this.logicalTrue = expressModel.getResource(EXPRESS_NS + "TRUE");
+    this.logicalUnknown = expressModel.getResource(EXPRESS_NS + "UNKNOWN");
+  }
+
+  /**
+   * Wraps models that were loaded by the caller, e.g. for a single conversion. The models are not
+   * prepared and the version is unknown.
+   */
+  static IfcSchema of(
+      OntModel ontModel,
+      OntModel expressModel,
+      OntModel listModel,
+      Map<String, EntityVO> ent,
+      Map<String, TypeVO> typ) {
+    return new IfcSchema(null, ontModel, expressModel, listModel, ent, typ);
+  }
+
+  /**
+   * Loads the schema of an IFC version from the resources folder.
+   *
+   * @param version the IFC version
+   * @return the loaded schema
+   * @throws IOException if a schema resource is missing or cannot be read
+   */
+  @SuppressWarnings("unchecked")
+  public static IfcSchema load(IfcVersion version) throws IOException {
+    OntModel expressModel = readOntology(SCHEMA_PATH + "express.ttl");
+    OntModel listModel = readOntology(SCHEMA_PATH + "list.ttl");
+    OntModel schema = readOntology(SCHEMA_PATH + version.getLabel() + ".ttl");
+    schema.add(expressModel);
+    schema.add(listModel);
+    // run the inference up front, later conversions then only read the models
+    schema.prepare();
+    expressModel.prepare();
+    listModel.prepare();
+
+    Map<String, EntityVO> ent =
+        (Map<String, EntityVO>) readObject(SCHEMA_PATH + "ent" + version.getLabel() + ".ser");
+    Map<String, TypeVO> typ =
+        (Map<String, TypeVO>) readObject(SCHEMA_PATH + "typ" + version.getLabel() + ".ser");
+    return new IfcSchema(version, schema, expressModel, listModel, ent, typ);
+  }
+
+  private static OntModel readOntology(String resource) throws IOException {
+    OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM_TRANS_INF);
+    try (Reader reader = new InputStreamReader(open(resource))) {
+      model.read(reader, null, "TTL");
+    }
+    return model;
+  }
+
+  private static Object readObject(String resource) throws IOException {
+    try (ObjectInputStream ois = new ObjectInputStream(open(resource))) {
+      return ois.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Cannot read " + resource, e);
+    }
+  }
+
+  private static InputStream open(String resource) throws IOException {
+    InputStream in = IfcSchema.class.getClassLoader().getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Schema resource not found: " + resource);
+    }
+    return in;
+  }
+
+  /**
+   * @return the IFC version of the schema, {@code null} for models loaded by the caller
+   */
+  public IfcVersion getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the ifcOWL ontology including the EXPRESS and list ontologies
+   */
+  public OntModel getOntModel() {
+    return ontModel;
+  }
+
+  /**
+   * @return the EXPRESS ontology
+   */
+  public OntModel getExpressModel() {
+    return expressModel;
+  }
+
+  /**
+   * @return the list ontology
+   */
+  public OntModel getListModel() {
+    return listModel;
+  }
+
+  /**
+   * @return the entities of the schema by name
+   */
+  public Map<String, EntityVO> getEntities() {
+    return ent;
+  }
+
+  /**
+   * @return the types of the schema by name
+   */
+  public Map<String, TypeVO> getTypes() {
+    return typ;
+  }
+
+  /**
+   * @return the classifications of the property ranges, shared by all conversions
+   */
+  public RangeClassifier getRangeClassifier() {
+    return rangeClassifier;
+  }
+
+  /**
+   * @return the express:hasExpressID property
+   */
+  public Resource getHasExpressID() {
+    return hasExpressID;
+  }
+
+  /**
+   * @return the list:hasContents property
+   */
+  public OntProperty getHasContents() {
+    return hasContents;
+  }
+
+  /**
+   * @return the list:hasNext property
+   */
+  public OntProperty getHasNext() {
+    return hasNext;
+  }
+
+  /**
+   * @return the express:FALSE value of express:LOGICAL
+   */
+  public Resource getLogicalFalse() {
+    return logicalFalse;
+  }
+
+  /**
+   * @return the express:TRUE value of express:LOGICAL
+   */
+  public Resource getLogicalTrue() {
+    return logicalTrue;
+  }
+
+  /**
+   * @return the express:UNKNOWN value of express:LOGICAL
+   */
+  public Resource getLogicalUnknown() {
+    return logicalUnknown;
+  }
+
+  /**
+   * @param ontNS namespace of the ifcOWL ontology used in the output
+   * @return the entity plans of the schema for the namespace, shared by all conversions
+   */
+  public EntityPlans getEntityPlans(String ontNS) {
+    return entityPlans.computeIfAbsent(
+        ontNS, ns -> new EntityPlans(ontModel, ent, rangeClassifier, ns));
+  }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** Compressions of the converter output, applied while the output is written. */
+public enum OutputCompression {
+
+  /** Plain output */
+  NONE,
+  /** gzip, readable everywhere, e.g. by RDF4J and Jena parsers */
+  GZIP,
+  /** Zstandard, much faster than gzip at a similar or better ratio */
+  ZSTD;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Wraps a stream so that everything written is compressed. Closing the returned stream finishes
+   * the compression, but does not close the given stream.
+   *
+   * @param out the stream receiving the compressed output
+   * @return the compressing stream
+   * @throws IOException if the compression cannot be started
+   */
+  public OutputStream wrap(OutputStream out) throws IOException {
+    OutputStream target = new NonClosingOutputStream(out);
+    switch (this) {
+      case GZIP:
+        return new GZIPOutputStream(target, BUFFER_SIZE);
+      case ZSTD:
+        return new ZstdOutputStream(target);
+      default:
+        return target;
+    }
+  }
+
+  /** Flushes instead of closing, the caller of the conversion owns the output stream. */
+  private static class NonClosingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+
+    NonClosingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+
+/** RDF syntaxes the converter writes. */
+public enum OutputFormat {
+
+  /** Turtle, the most compact text syntax, but slow to write and to parse */
+  TURTLE(RDFLanguages.TURTLE),
+  /** N-Triples, one triple per line, so the output can be split for parallel loading */
+  NTRIPLES(RDFLanguages.NTRIPLES),
+  /** N-Quads, like N-Triples with the base URI of the model as named graph of every triple */
+  NQUADS(RDFLanguages.NQUADS),
+  /** RDF4J binary RDF, the fastest to parse for RDF4J, it has no room for a header comment */
+  BINARY(null);
+
+  private final Lang lang;
+
+  OutputFormat(Lang lang) {
+    this.lang = lang;
+  }
+
+  /**
+   * @return the Jena language of the format or {@code null}, if it is not written by Jena
+   */
+  public Lang getLang() {
+    return lang;
+  }
+}
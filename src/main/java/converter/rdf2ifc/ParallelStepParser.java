@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses the entity instances of an IFC SPF file held in a buffer on several threads. The buffer is
+ * split into chunks at statement ends, which are searched outside of strings and comments, and each
+ * chunk is parsed by its own {@link StepTokenizer} on a fork/join pool.
+ */
+public class ParallelStepParser {
+
+  /** Chunks smaller than this are not worth a task of their own */
+  private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+  /** Chunks per thread, more chunks than threads balance the uneven cost of instances */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final int parallelism;
+  private final Charset charset;
+  private final int minChunkSize;
+
+  /**
+   * @param parallelism number of threads used for parsing
+   * @param charset charset used to decode names and attribute values
+   */
+  public ParallelStepParser(int parallelism, Charset charset) {
+    this(parallelism, charset, MIN_CHUNK_SIZE);
+  }
+
+  /**
+   * @param parallelism number of threads used for parsing
+   * @param charset charset used to decode names and attribute values
+   * @param minChunkSize size in bytes below which a chunk is not split further, e.g. small to
+   *     split the models of the tests
+   */
+  ParallelStepParser(int parallelism, Charset charset, int minChunkSize) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    this.charset = charset;
+    this.minChunkSize = minChunkSize;
+  }
+
+  /**
+   * Parses all entity instances of the buffer from its position to its limit. The position of the
+   * buffer is not changed.
+   *
+   * @param buffer content of the IFC SPF file
+   * @param consumer receives the instances in the order of the file, always on the calling thread
+   * @throws IOException
+   */
+  public void parse(ByteBuffer buffer, Consumer<EntityInstance> consumer) throws IOException {
+    int[] bounds = split(buffer, chunkCount(buffer.remaining()));
+    List<ChunkTask> tasks = new ArrayList<ChunkTask>(bounds.length - 1);
+    for (int i = 0; i < bounds.length - 1; i++) {
+      tasks.add(new ChunkTask(buffer, bounds[i], bounds[i + 1]));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      for (ChunkTask task : tasks) {
+        pool.execute(task);
+      }
+      for (ChunkTask task : tasks) {
+        for (EntityInstance instance : task.join()) {
+          consumer.accept(instance);
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private int chunkCount(int size) {
+    int chunks = parallelism * CHUNKS_PER_THREAD;
+    return Math.max(1, Math.min(chunks, size / minChunkSize));
+  }
+
+  /**
+   * Splits the buffer into the given number of chunks of about the same size. Every bound is
+   * directly behind a ';' that ends a statement, i.e. one that is neither in a string nor in a
+   * comment.
+   *
+   * @return the absolute bounds of the chunks, starting with the position and ending with the limit
+   *     of the buffer
+   */
+  static int[] split(ByteBuffer buffer, int chunks) {
+    int start = buffer.position();
+    int end = buffer.limit();
+    List<Integer> bounds = new ArrayList<Integer>(chunks + 1);
+    bounds.add(start);
+    long chunkSize = Math.max(1, ((long) end - start) / chunks);
+    long target = start + chunkSize;
+
+    boolean inString = false;
+    boolean inComment = false;
+    for (int i = start; i < end && bounds.size() < chunks; i++) {
+      byte b = buffer.get(i);
+      if (inString) {
+        // a doubled quote inside a string toggles twice and keeps the string open
+        if (b == '\'') {
+          inString = false;
+        }
+      } else if (inComment) {
+        if (b == '*' && i + 1 < end && buffer.get(i + 1) == '/') {
+          inComment = false;
+          i++;
+        }
+      } else if (b == '\'') {
+        inString = true;
+      } else if (b == '/' && i + 1 < end && buffer.get(i + 1) == '*') {
+        inComment = true;
+        i++;
+      } else if (b == ';' && i >= target) {
+        bounds.add(i + 1);
+        target = i + 1 + chunkSize;
+      }
+    }
+    bounds.add(end);
+
+    int[] result = new int[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("serial")
+  private class ChunkTask extends RecursiveTask<List<EntityInstance>> {
+
+    private final ByteBuffer chunk;
+
+    ChunkTask(ByteBuffer buffer, int start, int end) {
+      this.chunk = buffer.duplicate();
+      this.chunk.limit(end).position(start);
+    }
+
+    @Override
+    protected List<EntityInstance> compute() {
+      List<EntityInstance> instances = new ArrayList<EntityInstance>();
+      try (StepTokenizer tokenizer = new StepTokenizer(chunk, charset)) {
+        EntityInstance instance;
+        while ((instance = tokenizer.next()) != null) {
+          instances.add(instance);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return instances;
+    }
+  }
+}
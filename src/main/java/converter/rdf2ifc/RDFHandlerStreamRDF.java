@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Passes the triples of a conversion to an RDF4J {@link RDFHandler}, e.g. a Rio writer or a
+ * repository connection, without serializing and parsing them in between. Jena nodes are turned
+ * into RDF4J values as they arrive.
+ *
+ * <p>A {@link StreamRDF} may declare prefixes before {@link #start()}, an {@link RDFHandler} must
+ * not receive namespaces before {@link RDFHandler#startRDF()}. Such prefixes are therefore held
+ * until the stream is started.
+ */
+public class RDFHandlerStreamRDF implements StreamRDF {
+
+  private final RDFHandler handler;
+  private final ValueFactory valueFactory;
+  private final Resource context;
+
+  /** Predicates and datatypes occur over and over, their IRIs are created only once */
+  private final Map<String, IRI> iris = new HashMap<String, IRI>();
+
+  /** Prefixes declared before the start, in their order */
+  private final Map<String, String> pendingPrefixes = new LinkedHashMap<String, String>();
+
+  private boolean started = false;
+
+  /**
+   * @param handler receives the statements
+   */
+  public RDFHandlerStreamRDF(RDFHandler handler) {
+    this(handler, SimpleValueFactory.getInstance(), null);
+  }
+
+  /**
+   * @param handler receives the statements
+   * @param valueFactory creates the values of the statements
+   * @param context named graph of the statements or {@code null} for the default graph
+   */
+  public RDFHandlerStreamRDF(RDFHandler handler, ValueFactory valueFactory, Resource context) {
+    this.handler = handler;
+    this.valueFactory = valueFactory;
+    this.context = context;
+  }
+
+  /**
+   * Returns a sink that adds the statements to a repository. The caller begins and commits the
+   * transaction, if any.
+   *
+   * @param connection the repository connection
+   * @param contexts named graphs the statements are added to, none for the default graph
+   * @return the sink
+   */
+  public static RDFHandlerStreamRDF forConnection(
+      RepositoryConnection connection, Resource... contexts) {
+    RDFHandler handler =
+        new AbstractRDFHandler() {
+          @Override
+          public void handleStatement(Statement st) {
+            connection.add(st, contexts);
+          }
+        };
+    return new RDFHandlerStreamRDF(handler, connection.getValueFactory(), null);
+  }
+
+  @Override
+  public void start() {
+    handler.startRDF();
+    started = true;
+    for (Map.Entry<String, String> prefix : pendingPrefixes.entrySet()) {
+      handler.handleNamespace(prefix.getKey(), prefix.getValue());
+    }
+    pendingPrefixes.clear();
+  }
+
+  @Override
+  public void triple(Triple triple) {
+    handler.handleStatement(createStatement(triple, context));
+  }
+
+  @Override
+  public void quad(Quad quad) {
+    Resource graph = quad.getGraph() != null ? (Resource) toValue(quad.getGraph()) : context;
+    handler.handleStatement(createStatement(quad.asTriple(), graph));
+  }
+
+  @Override
+  public void base(String base) {}
+
+  @Override
+  public void prefix(String prefix, String iri) {
+    if (started) {
+      handler.handleNamespace(prefix, iri);
+    } else {
+      pendingPrefixes.put(prefix, iri);
+    }
+  }
+
+  @Override
+  public void finish() {
+    handler.endRDF();
+    started = false;
+  }
+
+  private Statement createStatement(Triple triple, Resource graph) {
+    Resource subject = (Resource) toValue(triple.getSubject());
+    IRI predicate = getIRI(triple.getPredicate().getURI());
+    Value object = toValue(triple.getObject());
+    return graph == null
+        ? valueFactory.createStatement(subject, predicate, object)
+        : valueFactory.createStatement(subject, predicate, object, graph);
+  }
+
+  private Value toValue(Node node) {
+    if (node.isURI()) {
+      return valueFactory.createIRI(node.getURI());
+    } else if (node.isBlank()) {
+      return valueFactory.createBNode(node.getBlankNodeLabel());
+    }
+    String language = node.getLiteralLanguage();
+    if (language != null && !language.isEmpty()) {
+      return valueFactory.createLiteral(node.getLiteralLexicalForm(), language);
+    }
+    String datatype = node.getLiteralDatatypeURI();
+    if (datatype != null) {
+      return valueFactory.createLiteral(node.getLiteralLexicalForm(), getIRI(datatype));
+    }
+    return valueFactory.createLiteral(node.getLiteralLexicalForm());
+  }
+
+  private IRI getIRI(String uri) {
+    IRI iri = iris.get(uri);
+    if (iri == null) {
+      iri = valueFactory.createIRI(uri);
+      iris.put(uri, iri);
+    }
+    return iri;
+  }
+}
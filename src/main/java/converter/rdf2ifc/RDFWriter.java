@@ -1,25 +1,25 @@
 package converter.rdf2ifc;
 
 import com.buildingsmart.tech.ifcowl.ExpressReader;
-import com.buildingsmart.tech.ifcowl.vo.AttributeVO;
 import com.buildingsmart.tech.ifcowl.vo.EntityVO;
-import com.buildingsmart.tech.ifcowl.vo.IFCVO;
 import com.buildingsmart.tech.ifcowl.vo.TypeVO;
 import fi.ni.rdf.Namespace;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.ontology.OntClass;
@@ -34,10 +34,9 @@ import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.system.StreamRDFWriter;
-import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.RDFS;
 
 /*
  * Copyright 2016 Pieter Pauwels, Ghent University; Jyrki Oraskari, Aalto University; Lewis John McGibbney, Apache
@@ -76,17 +75,33 @@ public class RDFWriter {
 
   // conversion variables
   private int IDcounter = 0;
-  private Map<Long, IFCVO> linemap = new LinkedHashMap<Long, IFCVO>();
+  // marks generated ids as relative to a chunk in the writers of the parallel conversion
+  private String idMark = "";
+  private EntityTable<EntityInstance> linemap = new EntityTable<EntityInstance>();
+  // types and positions of all instances, replaces the linemap in the bounded memory mode
+  private EntityIndex index;
 
   private StreamRDF rdfWriter;
   private InputStream inputStream;
+  private ByteBuffer inputBuffer;
   private final OntModel ontModel;
   private final OntModel expressModel;
   private final OntModel listModel;
+  private final RangeClassifier rangeClassifier;
+  // ontology lookups of the entity types, compiled once per schema and namespace
+  private final EntityPlans plans;
+  private final Resource hasExpressID;
+  private final OntProperty hasContents;
+  private final OntProperty hasNext;
+  // values of express:LOGICAL, looked up once by the schema since its models are shared
+  private final Resource logicalFalse;
+  private final Resource logicalTrue;
+  private final Resource logicalUnknown;
 
   // for removing duplicates in line entries
-  private Map<String, Resource> listOfUniqueResources = new HashMap<String, Resource>();
-  private Map<Long, Long> listOfDuplicateLineEntries = new HashMap<Long, Long>();
+  // maps the express id of a removed duplicate to the remaining instance
+  private EntityTable<EntityInstance> listOfDuplicateLineEntries =
+      new EntityTable<EntityInstance>();
 
   // Taking care of avoiding duplicate resources
   private Map<String, Resource> propertyResourceMap = new HashMap<String, Resource>();
@@ -94,6 +109,20 @@ public class RDFWriter {
 
   private boolean removeDuplicates = false;
   private boolean expIdAsProperty = false;
+  private int parseParallelism = 1;
+  private int emitParallelism = 1;
+  private int emitChunkSize = EMIT_CHUNK_SIZE;
+  private boolean boundedMemory = false;
+  private ConversionMetrics metrics = new ConversionMetrics();
+  private long phaseStart;
+  private long entityCount = 0;
+
+  /** Consecutive instances converted by one task of the parallel conversion */
+  private static final int EMIT_CHUNK_SIZE = 1024;
+  /** Chunks per thread that are converted or waiting to be written at the same time */
+  private static final int CHUNKS_PER_THREAD = 4;
+  /** Separates a generated id relative to its chunk, it cannot occur in names or ids otherwise */
+  private static final char RELATIVE_ID = '\u0000';
 
   public boolean getExpIdAsProperty() {
     return expIdAsProperty;
@@ -114,21 +143,107 @@ public class RDFWriter {
       Map<String, EntityVO> ent,
       Map<String, TypeVO> typ,
       String ontURI) {
-    this.ontModel = ontModel;
-    this.expressModel = expressModel;
-    this.listModel = listModel;
+    this(IfcSchema.of(ontModel, expressModel, listModel, ent, typ), baseURI, ontURI);
     this.inputStream = inputStream;
+  }
+
+  /**
+   * Creates a writer reading the IFC model from a buffer, e.g. a memory mapped file, instead of a
+   * stream. The content is parsed in place, the buffer's position is not changed.
+   */
+  public RDFWriter(
+      OntModel ontModel,
+      OntModel expressModel,
+      OntModel listModel,
+      ByteBuffer inputBuffer,
+      String baseURI,
+      Map<String, EntityVO> ent,
+      Map<String, TypeVO> typ,
+      String ontURI) {
+    this(ontModel, expressModel, listModel, (InputStream) null, baseURI, ent, typ, ontURI);
+    this.inputBuffer = inputBuffer;
+  }
+
+  /**
+   * Creates a writer reading the IFC model from a buffer with a shared schema, whose range
+   * classifications and entity plans are reused by all writers of the schema.
+   */
+  public RDFWriter(IfcSchema schema, ByteBuffer inputBuffer, String baseURI, String ontURI) {
+    this(schema, baseURI, ontURI);
+    this.inputBuffer = inputBuffer;
+  }
+
+  /**
+   * Takes the models and the EXPRESS and list vocabulary from the schema, they are resolved once
+   * when the schema is created, so a writer does not query the shared inference models.
+   */
+  private RDFWriter(IfcSchema schema, String baseURI, String ontURI) {
+    this.ontModel = schema.getOntModel();
+    this.expressModel = schema.getExpressModel();
+    this.listModel = schema.getListModel();
+    this.rangeClassifier = schema.getRangeClassifier();
+    this.plans = schema.getEntityPlans(ontURI);
     this.baseURI = baseURI;
-    this.ent = ent;
-    this.typ = typ;
+    this.ent = schema.getEntities();
+    this.typ = schema.getTypes();
     this.ontNS = ontURI;
+    this.hasExpressID = schema.getHasExpressID();
+    this.hasContents = schema.getHasContents();
+    this.hasNext = schema.getHasNext();
+    this.logicalFalse = schema.getLogicalFalse();
+    this.logicalTrue = schema.getLogicalTrue();
+    this.logicalUnknown = schema.getLogicalUnknown();
+  }
+
+  /**
+   * Creates a writer for one chunk of the parallel conversion. It shares the schema and the parsed
+   * model with the parent, but numbers generated ids relative to the chunk and has its own maps.
+   */
+  private RDFWriter(RDFWriter parent) {
+    this.ontModel = parent.ontModel;
+    this.expressModel = parent.expressModel;
+    this.listModel = parent.listModel;
+    this.rangeClassifier = parent.rangeClassifier;
+    this.plans = parent.plans;
+    this.baseURI = parent.baseURI;
+    this.ent = parent.ent;
+    this.typ = parent.typ;
+    this.ontNS = parent.ontNS;
+    this.hasExpressID = parent.hasExpressID;
+    this.hasContents = parent.hasContents;
+    this.hasNext = parent.hasNext;
+    this.logicalFalse = parent.logicalFalse;
+    this.logicalTrue = parent.logicalTrue;
+    this.logicalUnknown = parent.logicalUnknown;
+    this.linemap = parent.linemap;
+    this.index = parent.index;
+    this.listOfDuplicateLineEntries = parent.listOfDuplicateLineEntries;
+    this.expIdAsProperty = parent.expIdAsProperty;
+    this.logToFile = parent.logToFile;
+    this.idMark = String.valueOf(RELATIVE_ID);
+    this.rdfWriter = new TripleBuffer();
   }
 
   public void parseModel2Stream(OutputStream out, Header header, Lang lang) throws IOException {
     if (lang == null) {
       lang = RDFLanguages.TURTLE;
     }
-    setRdfWriter(StreamRDFWriter.getWriterStream(out, lang));
+    parseModel2Stream(StreamRDFWriter.getWriterStream(out, lang), header);
+  }
+
+  /**
+   * Converts the model into any sink instead of a serializer, e.g. a {@link RDFHandlerStreamRDF}
+   * that adds the triples to a repository directly or a {@link CountingStreamRDF}.
+   *
+   * @param sink receives the prefixes and triples, it is started and finished by the conversion
+   * @param header header of the IFC file
+   * @throws IOException if the model cannot be read
+   */
+  public void parseModel2Stream(StreamRDF sink, Header header) throws IOException {
+    setRdfWriter(new MetricsStreamRDF(sink));
+    if (inputBuffer != null) {
+      metrics.add(ConversionMetrics.Counter.BYTES_READ, inputBuffer.remaining());
+    }
     getRdfWriter().base(getBaseURI());
     getRdfWriter().prefix("ifcowl", getOntNS());
     getRdfWriter().prefix("inst", getBaseURI());
@@ -150,24 +265,44 @@ public class RDFWriter {
                 OWL.imports.asNode(),
                 NodeFactory.createURI(getOntNS())));
     writeHeader(header);
+    if (boundedMemory) {
+      ConversionPhaseEvent phase = beginPhase(ConversionMetrics.Phase.STREAM_MODEL);
+      streamModel();
+      endPhase(phase, ConversionMetrics.Phase.STREAM_MODEL);
+      getRdfWriter().finish();
+      return;
+    }
     // Read the whole file into a linemap Map object
+    ConversionPhaseEvent phase = beginPhase(ConversionMetrics.Phase.READ_MODEL);
     readModel();
+    entityCount = linemap.size();
+    metrics.add(ConversionMetrics.Counter.ENTITIES_PARSED, linemap.size());
+    metrics.max(ConversionMetrics.Counter.PEAK_LINEMAP_SIZE, linemap.size());
+    endPhase(phase, ConversionMetrics.Phase.READ_MODEL);
 
     if (removeDuplicates) {
+      phase = beginPhase(ConversionMetrics.Phase.RESOLVE_DUPLICATES);
       resolveDuplicates();
+      metrics.add(
+          ConversionMetrics.Counter.DUPLICATES_REMOVED, listOfDuplicateLineEntries.size());
+      endPhase(phase, ConversionMetrics.Phase.RESOLVE_DUPLICATES);
     }
 
     // map entries of the linemap Map object to the ontology Model and make
     // new instances in the model
     boolean parsedSuccessfully;
     try {
+      phase = beginPhase(ConversionMetrics.Phase.MAP_ENTRIES);
       parsedSuccessfully = mapEntries();
       if (!parsedSuccessfully) return;
+      endPhase(phase, ConversionMetrics.Phase.MAP_ENTRIES);
 
       // if(indexFile==true){
       // jw.
       // }
+      phase = beginPhase(ConversionMetrics.Phase.CREATE_INSTANCES);
       createInstances();
+      endPhase(phase, ConversionMetrics.Phase.CREATE_INSTANCES);
     } catch (IfcDataFormatException ie) {
       System.out.println("Caught IfcDataFormatException: " + ie.getMessage());
       ie.printStackTrace();
@@ -180,6 +315,24 @@ public class RDFWriter {
     getRdfWriter().finish();
   }
 
+  /**
+   * Starts the flight recorder event of a phase and its timing. The event is cheap enough to stay
+   * enabled, it is one allocation per phase.
+   */
+  private ConversionPhaseEvent beginPhase(ConversionMetrics.Phase phase) {
+    ConversionPhaseEvent event = new ConversionPhaseEvent();
+    event.phase = phase.name();
+    event.begin();
+    phaseStart = System.nanoTime();
+    return event;
+  }
+
+  /** Commits the event of a phase and records its duration in the metrics */
+  private void endPhase(ConversionPhaseEvent event, ConversionMetrics.Phase phase) {
+    event.commit();
+    metrics.recordPhase(phase, System.nanoTime() - phaseStart);
+  }
+
   public void writeHeader(Header header) {
     if (header.getDescription() != null) {
       for (String s : header.getDescription()) {
@@ -272,216 +425,143 @@ public class RDFWriter {
   }
 
   public void readModel() {
-    try {
-      DataInputStream in = new DataInputStream(inputStream);
-      BufferedReader br = new BufferedReader(new InputStreamReader(in));
-      try {
-        String strLine;
-        while ((strLine = br.readLine()) != null) {
-          if (strLine.length() > 0) {
-            if (strLine.charAt(0) == '#') {
-              StringBuffer sb = new StringBuffer();
-              String stmp = strLine;
-              sb.append(stmp.trim());
-              while (!stmp.endsWith(");") && !(stmp.contains(");"))) {
-                stmp = br.readLine();
-                if (stmp == null) break;
-                sb.append(stmp.trim());
-              }
-              parseIfcLineStatement(sb.toString().substring(1));
-            }
-          }
-        }
-      } finally {
-        br.close();
+    if (inputBuffer != null && parseParallelism > 1) {
+      readModelParallel();
+      return;
+    }
+    try (StepTokenizer tokenizer =
+        inputBuffer != null
+            ? new StepTokenizer(inputBuffer, Charset.defaultCharset())
+            : new StepTokenizer(inputStream)) {
+      EntityInstance instance;
+      while ((instance = tokenizer.next()) != null) {
+        addLine(instance);
       }
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  private void parseIfcLineStatement(String line) {
-    IFCVO ifcvo = new IFCVO();
-    ifcvo.setFullLineAfterNum(line.substring(line.indexOf("=") + 1));
-    int state = 0;
-    StringBuffer sb = new StringBuffer();
-    int clCount = 0;
-    LinkedList<Object> current = (LinkedList<Object>) ifcvo.getObjectList();
-    Stack<LinkedList<Object>> listStack = new Stack<LinkedList<Object>>();
-    for (int i = 0; i < line.length(); i++) {
-      char ch = line.charAt(i);
-      switch (state) {
-        case 0:
-          if (ch == '=') {
-            ifcvo.setLineNum(toLong(sb.toString()));
-            sb.setLength(0);
-            state++;
-            continue;
-          } else if (Character.isDigit(ch)) sb.append(ch);
-          break;
-        case 1: // (
-          if (ch == '(') {
-            ifcvo.setName(sb.toString());
-            sb.setLength(0);
-            state++;
-            continue;
-          } else if (ch == ';') {
-            ifcvo.setName(sb.toString());
-            sb.setLength(0);
-            state = Integer.MAX_VALUE;
-          } else if (!Character.isWhitespace(ch)) sb.append(ch);
-          break;
-        case 2: // (... line started and doing (...
-          if (ch == '\'') {
-            state++;
-          }
-          if (ch == '(') {
-            listStack.push(current);
-            LinkedList<Object> tmp = new LinkedList<Object>();
-            if (sb.toString().trim().length() > 0) current.add(sb.toString().trim());
-            sb.setLength(0);
-            current.add(tmp);
-            current = tmp;
-            clCount++;
-          } else if (ch == ')') {
-            if (clCount == 0) {
-              if (sb.toString().trim().length() > 0) current.add(sb.toString().trim());
-              sb.setLength(0);
-              state = Integer.MAX_VALUE; // line is done
-              continue;
-            } else {
-              if (sb.toString().trim().length() > 0) current.add(sb.toString().trim());
-              sb.setLength(0);
-              clCount--;
-              current = listStack.pop();
-            }
-          } else if (ch == ',') {
-            if (sb.toString().trim().length() > 0) current.add(sb.toString().trim());
-            current.add(Character.valueOf(ch));
+  /** Parses chunks of the input buffer concurrently and adds the instances in file order. */
+  private void readModelParallel() {
+    try {
+      new ParallelStepParser(parseParallelism, Charset.defaultCharset())
+          .parse(inputBuffer, this::addLine);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 
-            sb.setLength(0);
-          } else {
-            sb.append(ch);
-          }
-          break;
-        case 3: // (...
-          if (ch == '\'') {
-            state--;
-            sb.append(ch);
-          } else {
-            sb.append(ch);
-          }
-          break;
-        default:
-          // Do nothing
+  /**
+   * Converts the model in two passes over the input buffer without keeping the instances in
+   * memory. The first pass indexes the express id, type and offset of every instance. The second
+   * pass parses the instances again one at a time and writes their triples, references are
+   * resolved to their type through the index. The heap used grows with the number of instances,
+   * not with the size of the model. Duplicates are not removed in this mode.
+   *
+   * <p>The maps of created resources are dropped after each instance, so they hold the resources of
+   * one instance only. Its own resource and its generated ones are named uniquely, so no type
+   * triple is repeated, but equal values of literal lists are shared within an instance only.
+   */
+  private void streamModel() throws IOException {
+    if (inputBuffer == null) {
+      throw new IllegalStateException("The bounded memory mode needs the model in a buffer");
+    }
+    if (removeDuplicates) {
+      System.out.println("Duplicates are not removed in the bounded memory mode. \r\n");
+    }
+    linemap = null;
+    index = new EntityIndex();
+    try (StepTokenizer tokenizer = new StepTokenizer(inputBuffer, Charset.defaultCharset())) {
+      EntityInstance instance;
+      while ((instance = tokenizer.nextWithoutAttributes()) != null) {
+        index.put(instance.getLineNum(), tokenizer.getOffset(), instance.getName());
+        IDcounter++;
+      }
+    }
+    entityCount = IDcounter;
+    metrics.add(ConversionMetrics.Counter.ENTITIES_PARSED, IDcounter);
+    // only one instance is held in memory at a time
+    metrics.max(ConversionMetrics.Counter.PEAK_LINEMAP_SIZE, 1);
+
+    try (StepTokenizer tokenizer = new StepTokenizer(inputBuffer, Charset.defaultCharset())) {
+      EntityInstance instance;
+      while ((instance = tokenizer.next()) != null) {
+        // of several instances with the same id only the last one is converted
+        if (index.getOffset(instance.getLineNum()) == tokenizer.getOffset()) {
+          checkReferences(instance);
+          createInstance(instance);
+          dropResourceMaps();
+        }
       }
+    } catch (IfcDataFormatException ie) {
+      System.out.println("Caught IfcDataFormatException: " + ie.getMessage());
+      ie.printStackTrace();
+      System.out.println("Converter quitted!!");
     }
-    linemap.put(ifcvo.getLineNum(), ifcvo);
+    index = null;
+  }
+
+  /** Replaces the maps of created resources by new ones, clearing would keep their capacity */
+  private void dropResourceMaps() {
+    if (!resourceMap.isEmpty()) {
+      resourceMap = new HashMap<String, Resource>();
+    }
+    if (!propertyResourceMap.isEmpty()) {
+      propertyResourceMap = new HashMap<String, Resource>();
+    }
+  }
+
+  /**
+   * Starts another emission of the read model into a sink, so the stages after {@link #readModel()}
+   * can be repeated on their own, e.g. {@link #createInstances()} by the benchmarks. The generated
+   * ids continue after the ones of the previous emission.
+   */
+  void restartEmission(StreamRDF sink) {
+    setRdfWriter(sink);
+    resourceMap = new HashMap<String, Resource>();
+    propertyResourceMap = new HashMap<String, Resource>();
+  }
+
+  private void addLine(EntityInstance instance) {
+    linemap.put(instance.getLineNum(), instance);
     IDcounter++;
   }
 
-  private void resolveDuplicates() throws IOException {
-    Map<String, IFCVO> listOfUniqueResources = new HashMap<String, IFCVO>();
-    List<Long> entriesToRemove = new ArrayList<Long>();
-    for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-      IFCVO vo = entry.getValue();
-      String t = vo.getFullLineAfterNum();
-      if (!listOfUniqueResources.containsKey(t)) listOfUniqueResources.put(t, vo);
-      else {
-        entriesToRemove.add(entry.getKey()); // linemap.remove(entry.getKey());
-        listOfDuplicateLineEntries.put(vo.getLineNum(), listOfUniqueResources.get(t).getLineNum());
+  /**
+   * Removes instances with the same content as an earlier one. Instances are compared by a
+   * fingerprint of their tokenized attributes, only instances with the same fingerprint are
+   * compared in full.
+   */
+  void resolveDuplicates() throws IOException {
+    FingerprintTable listOfUniqueResources = new FingerprintTable(linemap.size());
+    long[] fingerprint = new long[2];
+    for (EntityInstance vo : linemap) {
+      vo.fingerprint(fingerprint);
+      EntityInstance unique = listOfUniqueResources.putIfAbsent(fingerprint, vo);
+      if (unique != null) {
+        // removing while iterating is supported by the EntityTable
+        linemap.remove(vo.getLineNum());
+        listOfDuplicateLineEntries.put(vo.getLineNum(), unique);
       }
     }
     System.out.println(
         "found and removed " + listOfDuplicateLineEntries.size() + " duplicates! \r\n");
-    for (Long x : entriesToRemove) {
-      linemap.remove(x);
-    }
   }
 
-  private boolean mapEntries() throws IOException, IfcDataFormatException {
-    for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-      IFCVO vo = entry.getValue();
-
-      // mapping properties to IFCVOs
-      for (int i = 0; i < vo.getObjectList().size(); i++) {
-        Object o = vo.getObjectList().get(i);
-        if (Character.class.isInstance(o)) {
-          if ((Character) o != ',') {
-            System.out.println(
-                "We found a character that is not a comma in line: "
-                    + "#"
-                    + vo.getLineNum()
-                    + "="
-                    + vo.getFullLineAfterNum());
-          }
-        } else if (String.class.isInstance(o)) {
-          String s = (String) o;
-          if (s.length() < 1) continue;
-          if (s.charAt(0) == '#') {
-            Object or = null;
-            if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-              or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-            else or = linemap.get(toLong(s.substring(1)));
+  boolean mapEntries() throws IOException, IfcDataFormatException {
+    for (EntityInstance vo : linemap) {
+      // check all references, those to removed duplicates are redirected to the remaining instance
+      for (int i = 0; i < vo.getSlotCount(); i++) {
+        if (vo.getKind(i) == EntityInstance.REFERENCE) {
+          long id = vo.getReference(i);
+          if (!linemap.containsKey(id)) {
+            EntityInstance or = listOfDuplicateLineEntries.get(id);
             if (or == null) {
-              throw IfcDataFormatException.referencingNonExistingObject("#" + vo.getLineNum(), s);
-            }
-            vo.getObjectList().set(i, or);
-          }
-        } else if (LinkedList.class.isInstance(o)) {
-          @SuppressWarnings("unchecked")
-          LinkedList<Object> tmpList = (LinkedList<Object>) o;
-
-          for (int j = 0; j < tmpList.size(); j++) {
-            Object o1 = tmpList.get(j);
-            if (Character.class.isInstance(o)) {
-              if ((Character) o != ',') {
-                System.out.println(
-                    "We found a character that is not a comma in line: "
-                        + "#"
-                        + vo.getLineNum()
-                        + "="
-                        + vo.getFullLineAfterNum());
-              }
-            } else if (String.class.isInstance(o1)) {
-              String s = (String) o1;
-              if (s.length() < 1) continue;
-              if (s.charAt(0) == '#') {
-                Object or = null;
-                if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-                  or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-                else or = linemap.get(toLong(s.substring(1)));
-                if (or == null) {
-                  throw IfcDataFormatException.referencingNonExistingObject(
-                      s, "#" + vo.getLineNum() + "=" + vo.getFullLineAfterNum());
-                } else tmpList.set(j, or);
-              } else {
-                // list/set of values
-                tmpList.set(j, s);
-              }
-            } else if (LinkedList.class.isInstance(o1)) {
-              @SuppressWarnings("unchecked")
-              LinkedList<Object> tmp2List = (LinkedList<Object>) o1;
-              for (int j2 = 0; j2 < tmp2List.size(); j2++) {
-                Object o2 = tmp2List.get(j2);
-                if (String.class.isInstance(o2)) {
-                  String s = (String) o2;
-                  if (s.length() < 1) continue;
-                  if (s.charAt(0) == '#') {
-                    Object or = null;
-                    if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-                      or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-                    else or = linemap.get(toLong(s.substring(1)));
-                    if (or == null) {
-                      throw IfcDataFormatException.referencingNonExistingObject(
-                          s, "#" + vo.getLineNum() + "=" + vo.getFullLineAfterNum());
-
-                    } else tmp2List.set(j2, or);
-                  }
-                }
-              }
-              tmpList.set(j, tmp2List);
+              throw IfcDataFormatException.referencingNonExistingObject(
+                  "#" + vo.getLineNum(), vo.toString(i));
             }
+            vo.setReference(i, or.getLineNum());
           }
         }
       }
@@ -489,95 +569,302 @@ public class RDFWriter {
     return true;
   }
 
-  private void createInstances() throws IOException, IfcDataFormatException {
-    for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-      IFCVO ifcLineEntry = entry.getValue();
-      String typeName = "";
-      if (ent.containsKey(ifcLineEntry.getName()))
-        typeName = ent.get(ifcLineEntry.getName()).getName();
-      else if (typ.containsKey(ifcLineEntry.getName()))
-        typeName = typ.get(ifcLineEntry.getName()).getName();
-
-      OntClass cl = ontModel.getOntClass(getOntNS() + typeName);
-      Resource hasExpressID = ontModel.getResource(getExpressns() + "hasExpressID");
-      if (cl == null) {
-        throw IfcDataFormatException.nonExistingEntity(
-            ifcLineEntry.getName(),
-            "#" + ifcLineEntry.getLineNum() + "= " + ifcLineEntry.getFullLineAfterNum());
+  /** Checks that all references of an instance exist in the index. */
+  private void checkReferences(EntityInstance vo) throws IfcDataFormatException {
+    for (int i = 0; i < vo.getSlotCount(); i++) {
+      if (vo.getKind(i) == EntityInstance.REFERENCE && !index.containsKey(vo.getReference(i))) {
+        throw IfcDataFormatException.referencingNonExistingObject(
+            "#" + vo.getLineNum(), vo.toString(i));
       }
+    }
+  }
 
-      Resource r =
-          getResource(
-              getBaseURI() + createLocalName(typeName + "_" + ifcLineEntry.getLineNum()), cl);
-      if (expIdAsProperty == true) {
-        getRdfWriter()
-            .triple(
-                new Triple(
-                    r.asNode(),
-                    hasExpressID.asNode(),
-                    ResourceFactory.createTypedLiteral(
-                            ifcLineEntry.getLineNum().toString(), XSDDatatype.XSDinteger)
-                        .asNode()));
+  void createInstances() throws IOException, IfcDataFormatException {
+    if (emitParallelism > 1) {
+      createInstancesParallel();
+    } else {
+      for (EntityInstance ifcLineEntry : linemap) {
+        createInstance(ifcLineEntry);
       }
-      listOfUniqueResources.put(ifcLineEntry.getFullLineAfterNum(), r);
-      fillProperties(ifcLineEntry, r, cl);
     }
     // The map is used only to avoid duplicates.
     // So, it can be cleared here
     propertyResourceMap.clear();
   }
 
+  /**
+   * Converts the instances on several threads. The instances are split into chunks of consecutive
+   * instances, each chunk is converted by a writer of its own into a buffer, and the buffers are
+   * written to the output in the order of the chunks on the calling thread. Generated ids are
+   * numbered relative to their chunk and shifted when it is written, so the output is the same as
+   * the one of the sequential conversion, except that equal values of literal lists are shared
+   * within a chunk only.
+   *
+   * <p>The ontology is an inference model, which is not safe for concurrent reads. The plans of all
+   * entity types and the classes of the defined types are therefore compiled on the calling thread
+   * before the threads start, later lookups of the ontology are serialized by a lock on the model.
+   */
+  private void createInstancesParallel() throws IOException, IfcDataFormatException {
+    for (EntityInstance ifcLineEntry : linemap) {
+      plans.compile(ifcLineEntry, typ);
+    }
+    ForkJoinPool pool = new ForkJoinPool(emitParallelism);
+    Deque<EmitTask> pending = new ArrayDeque<EmitTask>();
+    try {
+      List<EntityInstance> chunk = new ArrayList<EntityInstance>(emitChunkSize);
+      for (EntityInstance ifcLineEntry : linemap) {
+        chunk.add(ifcLineEntry);
+        if (chunk.size() == emitChunkSize) {
+          EmitTask task = new EmitTask(chunk);
+          pool.execute(task);
+          pending.add(task);
+          chunk = new ArrayList<EntityInstance>(emitChunkSize);
+          // keep only a few chunks in memory
+          if (pending.size() >= emitParallelism * CHUNKS_PER_THREAD) {
+            writeChunk(pending.poll());
+          }
+        }
+      }
+      if (!chunk.isEmpty()) {
+        EmitTask task = new EmitTask(chunk);
+        pool.execute(task);
+        pending.add(task);
+      }
+      while (!pending.isEmpty()) {
+        writeChunk(pending.poll());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void writeChunk(EmitTask task) throws IOException, IfcDataFormatException {
+    RDFWriter chunkWriter = task.join();
+    int base = IDcounter;
+    for (Triple t : ((TripleBuffer) chunkWriter.getRdfWriter()).triples) {
+      getRdfWriter()
+          .triple(
+              new Triple(
+                  shiftGeneratedId(t.getSubject(), base),
+                  t.getPredicate(),
+                  shiftGeneratedId(t.getObject(), base)));
+    }
+    IDcounter += chunkWriter.IDcounter;
+    if (task.ioFailure != null) {
+      throw task.ioFailure;
+    }
+    if (task.dataFailure != null) {
+      throw task.dataFailure;
+    }
+  }
+
+  /**
+   * Counts the triples by the namespace of their predicate and passes them on to the sink. The
+   * counts are added to the metrics when the sink is finished.
+   */
+  private class MetricsStreamRDF implements StreamRDF {
+
+    private final StreamRDF sink;
+    private final String[] families = {"ifcowl", "express", "list", "rdf", "ifch", "other"};
+    private final long[] counts = new long[families.length];
+
+    MetricsStreamRDF(StreamRDF sink) {
+      this.sink = sink;
+    }
+
+    private int family(Node predicate) {
+      String uri = predicate.getURI();
+      if (uri.startsWith(ontNS)) {
+        return 0;
+      } else if (uri.startsWith(expressNS)) {
+        return 1;
+      } else if (uri.startsWith(listNS)) {
+        return 2;
+      } else if (uri.startsWith(Namespace.RDF)) {
+        return 3;
+      } else if (uri.startsWith(IfcHeader.getURI())) {
+        return 4;
+      }
+      return 5;
+    }
+
+    @Override
+    public void start() {
+      sink.start();
+    }
+
+    @Override
+    public void triple(Triple triple) {
+      counts[family(triple.getPredicate())]++;
+      sink.triple(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+      counts[family(quad.getPredicate())]++;
+      sink.quad(quad);
+    }
+
+    @Override
+    public void base(String base) {
+      sink.base(base);
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+      sink.prefix(prefix, iri);
+    }
+
+    @Override
+    public void finish() {
+      for (int i = 0; i < families.length; i++) {
+        if (counts[i] > 0) {
+          metrics.addTriples(families[i], counts[i]);
+          counts[i] = 0;
+        }
+      }
+      sink.finish();
+    }
+  }
+
+  /** Replaces an id relative to a chunk by the id in the output. */
+  private static Node shiftGeneratedId(Node node, int base) {
+    if (node.isURI()) {
+      String uri = node.getURI();
+      int mark = uri.indexOf(RELATIVE_ID);
+      if (mark >= 0) {
+        int id = base + Integer.parseInt(uri.substring(mark + 1));
+        return NodeFactory.createURI(uri.substring(0, mark) + id);
+      }
+    }
+    return node;
+  }
+
+  /** Converts one chunk of instances, a failure ends the chunk like the sequential conversion. */
+  @SuppressWarnings("serial")
+  private class EmitTask extends RecursiveTask<RDFWriter> {
+
+    private final List<EntityInstance> chunk;
+    private IOException ioFailure;
+    private IfcDataFormatException dataFailure;
+
+    EmitTask(List<EntityInstance> chunk) {
+      this.chunk = chunk;
+    }
+
+    @Override
+    protected RDFWriter compute() {
+      RDFWriter chunkWriter = new RDFWriter(RDFWriter.this);
+      try {
+        for (EntityInstance ifcLineEntry : chunk) {
+          chunkWriter.createInstance(ifcLineEntry);
+        }
+      } catch (IOException e) {
+        ioFailure = e;
+      } catch (IfcDataFormatException e) {
+        dataFailure = e;
+      }
+      return chunkWriter;
+    }
+  }
+
+  /** Collects the triples of a chunk until they are written in order. */
+  private static class TripleBuffer implements StreamRDF {
+
+    private final List<Triple> triples = new ArrayList<Triple>();
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void triple(Triple triple) {
+      triples.add(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+      triples.add(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {}
+
+    @Override
+    public void prefix(String prefix, String iri) {}
+
+    @Override
+    public void finish() {}
+  }
+
+  private void createInstance(EntityInstance ifcLineEntry)
+      throws IOException, IfcDataFormatException {
+    EntityPlan plan = plans.get(ifcLineEntry.getName());
+    String typeName = "";
+    OntClass cl;
+    if (plan != null) {
+      typeName = plan.getName();
+      cl = plan.getOntClass();
+    } else {
+      if (typ.containsKey(ifcLineEntry.getName()))
+        typeName = typ.get(ifcLineEntry.getName()).getName();
+      cl = plans.getOntClass(typeName);
+    }
+    if (cl == null) {
+      throw IfcDataFormatException.nonExistingEntity(
+          ifcLineEntry.getName(),
+          "#" + ifcLineEntry.getLineNum() + "= " + ifcLineEntry.getFullLineAfterNum());
+    }
+
+    Resource r =
+        getResource(
+            getBaseURI() + createLocalName(typeName + "_" + ifcLineEntry.getLineNum()), cl);
+    if (expIdAsProperty == true) {
+      getRdfWriter()
+          .triple(
+              new Triple(
+                  r.asNode(),
+                  hasExpressID.asNode(),
+                  ResourceFactory.createTypedLiteral(
+                          Long.toString(ifcLineEntry.getLineNum()), XSDDatatype.XSDinteger)
+                      .asNode()));
+    }
+    fillProperties(ifcLineEntry, r, plan);
+  }
+
   TypeVO typeRemembrance = null;
   private String logFile;
 
-  private void fillProperties(IFCVO ifcLineEntry, Resource r, OntClass cl)
+  private void fillProperties(EntityInstance ifcLineEntry, Resource r, EntityPlan plan)
       throws IOException, IfcDataFormatException {
-    EntityVO evo = ent.get(ExpressReader.formatClassName(ifcLineEntry.getName()));
-
-    if (evo == null) {
+    if (plan == null) {
       throw IfcDataFormatException.nonExistingEntity(
           ifcLineEntry.getName(),
           "#" + ifcLineEntry.getLineNum() + "=" + ifcLineEntry.getFullLineAfterNum());
 
     } else {
-      final String subject = createLocalName(evo.getName() + "_" + ifcLineEntry.getLineNum());
+      final String subject = createLocalName(plan.getName() + "_" + ifcLineEntry.getLineNum());
       // final String subject = evo.getName() + "_" +
       // ifcLineEntry.getLineNum();
       typeRemembrance = null;
       int attributePointer = 0;
-      for (Object o : ifcLineEntry.getObjectList()) {
-        if (Character.class.isInstance(o)) {
-          if ((Character) o != ',') {
-            System.out.println(
-                "We found a character that is not a comma in line: "
-                    + "#"
-                    + ifcLineEntry.getLineNum()
-                    + "="
-                    + ifcLineEntry.getFullLineAfterNum());
-          }
-        } else if (String.class.isInstance(o)) {
-          //				if (logToFile)
-          //					bw.write("fillProperties 4 - fillPropertiesHandleStringObject(evo)" + "\r\n");
-          attributePointer =
-              fillPropertiesHandleStringObject(r, evo, subject, attributePointer, o, ifcLineEntry);
-        } else if (IFCVO.class.isInstance(o)) {
-          //				if (logToFile)
-          //					bw.write("fillProperties 5 - fillPropertiesHandleIfcObject(evo)" + "\r\n");
-          attributePointer =
-              fillPropertiesHandleIfcObject(r, evo, attributePointer, o, ifcLineEntry);
-        } else if (LinkedList.class.isInstance(o)) {
-          //				if (logToFile)
-          //					bw.write("fillProperties 6 - fillPropertiesHandleListObject(evo)" + "\r\n");
-          attributePointer =
-              fillPropertiesHandleListObject(r, evo, attributePointer, o, ifcLineEntry);
+      int end = ifcLineEntry.getAttributeStart() + ifcLineEntry.getAttributeCount();
+      for (int slot = ifcLineEntry.getAttributeStart(); slot < end; slot++) {
+        switch (ifcLineEntry.getKind(slot)) {
+          case EntityInstance.REFERENCE:
+            attributePointer =
+                fillPropertiesHandleIfcObject(r, plan, attributePointer, slot, ifcLineEntry);
+            break;
+          case EntityInstance.LIST:
+            attributePointer =
+                fillPropertiesHandleListObject(r, plan, attributePointer, slot, ifcLineEntry);
+            break;
+          default:
+            attributePointer =
+                fillPropertiesHandleStringObject(
+                    r, plan, subject, attributePointer, slot, ifcLineEntry);
         }
-        //				if (logToFile)
-        //					bw.flush();
       }
     }
-
-    //		if (logToFile)
-    //			bw.flush();
   }
 
   // --------------------------------------
@@ -585,99 +872,75 @@ public class RDFWriter {
   // --------------------------------------
 
   private int fillPropertiesHandleStringObject(
-      Resource r, EntityVO evo, String subject, int attributePointer, Object o, IFCVO ivo)
+      Resource r,
+      EntityPlan plan,
+      String subject,
+      int attributePointer,
+      int slot,
+      EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    if (!((String) o).equals("$") && !((String) o).equals("*")) {
-      if (typ.get(ExpressReader.formatClassName((String) o)) == null) {
-        if ((evo != null) && (evo.getDerivedAttributeList() != null)) {
-          if (evo.getDerivedAttributeList().size() <= attributePointer) {
-            throw IfcDataFormatException.attributeOutOfBounds(
-                "#" + ivo.getLineNum() + "=" + ivo.getFullLineAfterNum());
-          }
-          final AttributeVO avo = evo.getDerivedAttributeList().get(attributePointer);
-          final String propURI = getOntNS() + avo.getLowerCaseName();
-          final String literalString = filterExtras((String) o);
-          if (avo.isSet()) {
-            throw IfcDataFormatException.valueOutOfRange("#" + ivo.getLineNum(), (String) o, "SET");
-          }
-          OntProperty p = ontModel.getOntProperty(propURI);
-          OntResource range = p.getRange();
-          if (range.isClass()) {
-            if (range
-                .asClass()
-                .hasSuperClass(expressModel.getOntClass(getExpressns() + "ENUMERATION"))) {
-              // Check for ENUM
-              addEnumProperty(r, p, range, literalString, ivo);
-            } else if (range
-                .asClass()
-                .hasSuperClass(expressModel.getOntClass(getExpressns() + "SELECT"))) {
-              // Check for SELECT
-              //                          if (logToFile)
-              //                              bw.write("*OK 25*: found subClass of SELECT Class, now
-              // doing nothing with it: " + p + " - " + range.getLocalName() + " - " + literalString
-              // + "\r\n");
-              createLiteralProperty(r, p, range, literalString, ivo);
-            } else if (range
-                .asClass()
-                .hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
-              // Check for LIST
-              throw IfcDataFormatException.valueOutOfRange(
-                  "#" + ivo.getLineNum(), (String) o, range.getLocalName());
-            } else {
-              createLiteralProperty(r, p, range, literalString, ivo);
-            }
-          } else {
+    int kind = ivo.getKind(slot);
+    if (kind != EntityInstance.UNSET && kind != EntityInstance.DERIVED) {
+      TypeVO type = getTypeOfKeyword(ivo, slot);
+      if (type == null) {
+        if (!plan.hasAttribute(attributePointer)) {
+          throw IfcDataFormatException.attributeOutOfBounds(
+              "#" + ivo.getLineNum() + "=" + ivo.getFullLineAfterNum());
+        }
+        final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+        final String literalString = ivo.getLiteral(slot);
+        if (attribute.isSet()) {
+          throw IfcDataFormatException.valueOutOfRange(
+              "#" + ivo.getLineNum(), ivo.getToken(slot), "SET");
+        }
+        OntProperty p = attribute.getProperty();
+        OntResource range = attribute.getRange();
+        switch (attribute.getRangeKind()) {
+          case EntityPlan.ENUMERATION:
+            addEnumProperty(r, p, range, literalString, ivo);
+            break;
+          case EntityPlan.SELECT:
+            // literal of a SELECT, the type is taken from the range
+            createLiteralProperty(r, p, range, literalString, ivo);
+            break;
+          case EntityPlan.LIST:
+            throw IfcDataFormatException.valueOutOfRange(
+                "#" + ivo.getLineNum(), ivo.getToken(slot), range.getLocalName());
+          case EntityPlan.CLASS:
+            createLiteralProperty(r, p, range, literalString, ivo);
+            break;
+          default:
             System.out.println(
                 "found other kind of property: " + p + " - " + range.getLocalName() + "\r\n");
-          }
-        } else {
-          System.out.println(
-              "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
         }
         attributePointer++;
       } else {
-        typeRemembrance = typ.get(ExpressReader.formatClassName((String) o));
-        // if (typeRemembrance == null) {
-        // if (logToFile)
-        // bw.write("*ERROR 11*: The following TYPE is not found: "
-        // + ExpressReader.formatClassName((String) o)
-        // + "\r\nQuitting the application without output!\r\n ");
-        // System.err.println(
-        // "*ERROR 11*: The following TYPE is not found: " +
-        // ExpressReader.formatClassName((String) o)
-        // + "\r\nQuitting the application without output!\r\n ");
-        // }
+        typeRemembrance = type;
       }
     } else attributePointer++;
     return attributePointer;
   }
 
   private int fillPropertiesHandleIfcObject(
-      Resource r, EntityVO evo, int attributePointer, Object o, IFCVO ivo)
+      Resource r, EntityPlan plan, int attributePointer, int slot, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    if ((evo != null)
-        && (evo.getDerivedAttributeList() != null)
-        && (evo.getDerivedAttributeList().size() > attributePointer)) {
-      final AttributeVO avo = evo.getDerivedAttributeList().get(attributePointer);
-      if (avo.isSet()) {
+    long referencedId = ivo.getReference(slot);
+    if (plan.hasAttribute(attributePointer)) {
+      final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+      if (attribute.isSet()) {
         throw IfcDataFormatException.valueOutOfRange(
-            "#" + ivo.getLineNum(), "#" + ((IFCVO) o).getLineNum(), "SET");
+            "#" + ivo.getLineNum(), "#" + referencedId, "SET");
       }
-      final String propURI =
-          getOntNS() + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-      EntityVO evorange = ent.get(ExpressReader.formatClassName(((IFCVO) o).getName()));
-
-      OntProperty p = ontModel.getOntProperty(propURI);
-      OntClass range = p.getRange().asClass();
-      OntClass rclass = ontModel.getOntClass(getOntNS() + evorange.getName());
-      if (!rclass.hasSuperClass(range)) {
+      EntityPlan target = plans.get(getReferencedName(referencedId));
+
+      OntProperty p = attribute.getProperty();
+      if (!attribute.accepts(target)) {
         throw IfcDataFormatException.valueOutOfRange(
-            "#" + ivo.getLineNum(), "#" + ((IFCVO) o).getLineNum(), range.getLocalName());
+            "#" + ivo.getLineNum(), "#" + referencedId, attribute.getRange().getLocalName());
       } else {
         Resource r1 =
             ResourceFactory.createResource(
-                getBaseURI()
-                    + createLocalName(evorange.getName() + "_" + ((IFCVO) o).getLineNum()));
+                getBaseURI() + createLocalName(target.getName() + "_" + referencedId));
 
         getRdfWriter().triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
         //           if (logToFile)
@@ -692,32 +955,26 @@ public class RDFWriter {
     return attributePointer;
   }
 
-  @SuppressWarnings("unchecked")
   private int fillPropertiesHandleListObject(
-      Resource r, EntityVO evo, int attributePointer, Object o, IFCVO ivo)
+      Resource r, EntityPlan plan, int attributePointer, int listSlot, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
 
-    final LinkedList<Object> tmpList = (LinkedList<Object>) o;
+    final int listStart = ivo.getListStart(listSlot);
+    final int listEnd = listStart + ivo.getListSize(listSlot);
     LinkedList<String> literals = new LinkedList<String>();
     LinkedList<Resource> listRemembranceResources = new LinkedList<Resource>();
-    LinkedList<IFCVO> IFCVOs = new LinkedList<IFCVO>();
+    LinkedList<Long> references = new LinkedList<Long>();
 
     // process list
-    for (int j = 0; j < tmpList.size(); j++) {
-      Object o1 = tmpList.get(j);
-      if (Character.class.isInstance(o1)) {
-        Character c = (Character) o1;
-        if (c != ',') {
-          System.out.println(
-              "We found a character that is not a comma. That is odd. Check!" + "\r\n");
-        }
-      } else if (String.class.isInstance(o1)) {
-        TypeVO t = typ.get(ExpressReader.formatClassName((String) o1));
+    for (int j = listStart; j < listEnd; j++) {
+      int kind = ivo.getKind(j);
+      if (kind != EntityInstance.REFERENCE && kind != EntityInstance.LIST) {
+        TypeVO t = getTypeOfKeyword(ivo, j);
         if (typeRemembrance == null) {
           if (t != null) {
             typeRemembrance = t;
           } else {
-            literals.add(filterExtras((String) o1));
+            literals.add(ivo.getLiteral(j));
           }
         } else {
           if (t != null) {
@@ -729,35 +986,31 @@ public class RDFWriter {
                   "Found two different types in one list. This is worth checking.\r\n ");
             }
           } else {
-            literals.add(filterExtras((String) o1));
+            literals.add(ivo.getLiteral(j));
           }
         }
-      } else if (IFCVO.class.isInstance(o1)) {
-        if ((evo != null)
-            && (evo.getDerivedAttributeList() != null)
-            && (evo.getDerivedAttributeList().size() > attributePointer)) {
-          String propURI = evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-          OntProperty p = ontModel.getOntProperty(getOntNS() + propURI);
-          OntResource typerange = p.getRange();
-
-          if (typerange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+      } else if (kind == EntityInstance.REFERENCE) {
+        if (plan.hasAttribute(attributePointer)) {
+          final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+          OntProperty p = attribute.getProperty();
+          OntResource typerange = attribute.getRange();
+
+          if (attribute.getRangeKind() == EntityPlan.LIST) {
             // EXPRESS LISTs
-            String listvaluepropURI =
-                getOntNS()
-                    + typerange.getLocalName().substring(0, typerange.getLocalName().length() - 5);
-            OntResource listrange = ontModel.getOntResource(listvaluepropURI);
+            OntResource listrange = attribute.getListValueRange();
 
-            if (listrange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+            if (rangeClassifier.isList(listrange)) {
               System.out.println(
                   "Found supposedly unhandled ListOfList, but this should not be possible."
                       + "\r\n");
             } else {
-              fillClassInstanceList(tmpList, typerange, p, r);
-              j = tmpList.size() - 1;
+              fillClassInstanceList(ivo, listSlot, typerange, listrange, p, r);
+              j = listEnd - 1;
             }
           } else {
             // EXPRESS SETs
-            EntityVO evorange = ent.get(ExpressReader.formatClassName(((IFCVO) o1).getName()));
+            long referencedId = ivo.getReference(j);
+            EntityPlan target = plans.get(getReferencedName(referencedId));
             //                 OntResource rclass = ontModel.getOntResource(getOntNS() +
             // evorange.getName());
 
@@ -768,19 +1021,10 @@ public class RDFWriter {
             }*/
 
             if (literals.size() > 0) {
-              String prop =
-                  getOntNS()
-                      + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-              OntProperty pp = ontModel.getOntProperty(prop);
-              OntResource trange = pp.getRange();
               if (typeRemembrance != null) {
-                if ((evo != null)
-                    && (evo.getDerivedAttributeList() != null)
-                    && (evo.getDerivedAttributeList().size() > attributePointer)) {
-                  if (trange
-                      .asClass()
-                      .hasSuperClass(listModel.getOntClass(getListns() + "OWLList")))
-                    addRegularListProperty(r, p, literals, typeRemembrance, ivo);
+                if (plan.hasAttribute(attributePointer)) {
+                  if (attribute.getRangeKind() == EntityPlan.LIST)
+                    addRegularListProperty(r, p, typerange, literals, typeRemembrance, ivo);
                   else {
                     addSinglePropertyFromTypeRemembrance(
                         r, p, literals.getFirst(), typeRemembrance, ivo);
@@ -796,13 +1040,9 @@ public class RDFWriter {
                           + "\r\n");
                 }
                 typeRemembrance = null;
-              } else if ((evo != null)
-                  && (evo.getDerivedAttributeList() != null)
-                  && (evo.getDerivedAttributeList().size() > attributePointer)) {
-                if (typerange
-                    .asClass()
-                    .hasSuperClass(listModel.getOntClass(getListns() + "OWLList")))
-                  addRegularListProperty(r, p, literals, null, ivo);
+              } else if (plan.hasAttribute(attributePointer)) {
+                if (attribute.getRangeKind() == EntityPlan.LIST)
+                  addRegularListProperty(r, p, typerange, literals, null, ivo);
                 else
                   for (int i = 0; i < literals.size(); i++)
                     createLiteralProperty(r, p, typerange, literals.get(i), ivo);
@@ -815,8 +1055,7 @@ public class RDFWriter {
 
             Resource r1 =
                 ResourceFactory.createResource(
-                    getBaseURI()
-                        + createLocalName(evorange.getName() + "_" + ((IFCVO) o1).getLineNum()));
+                    getBaseURI() + createLocalName(target.getName() + "_" + referencedId));
             getRdfWriter().triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
             //                        if (logToFile)
             //                            bw.write("*OK 5*: added property: " + r.getLocalName() + "
@@ -826,40 +1065,31 @@ public class RDFWriter {
           System.out.println(
               "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
         }
-      } else if (LinkedList.class.isInstance(o1)) {
+      } else {
+        final int innerStart = ivo.getListStart(j);
+        final int innerEnd = innerStart + ivo.getListSize(j);
         if (typeRemembrance != null) {
-          LinkedList<Object> tmpListInList = (LinkedList<Object>) o1;
-          for (int jj = 0; jj < tmpListInList.size(); jj++) {
-            Object o2 = tmpListInList.get(jj);
-            if (Character.class.isInstance(o2)) {
-              if ((Character) o2 != ',') {
-                System.out.println(
-                    "We found a character that is not a comma. That should not be possible"
-                        + "\r\n");
-              }
-            } else if (String.class.isInstance(o2)) {
-              literals.add(filterExtras((String) o2));
-            } else if (IFCVO.class.isInstance(o2)) {
+          for (int jj = innerStart; jj < innerEnd; jj++) {
+            int innerKind = ivo.getKind(jj);
+            if (innerKind != EntityInstance.REFERENCE && innerKind != EntityInstance.LIST) {
+              literals.add(ivo.getLiteral(jj));
+            } else if (innerKind == EntityInstance.REFERENCE) {
               // Lists of IFC entities
               System.out.println(
                   "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
-            } else if (LinkedList.class.isInstance(o2)) {
+            } else {
               // this happens only for types that are equivalent
               // to lists (e.g. IfcLineIndex in IFC4_ADD1)
               // in this case, the elements of the list should be
               // treated as new instances that are equivalent to
               // the correct lists
-              LinkedList<Object> tmpListInListInList = (LinkedList<Object>) o2;
-              for (int jjj = 0; jjj < tmpListInListInList.size(); jjj++) {
-                Object o3 = tmpListInListInList.get(jjj);
-                if (Character.class.isInstance(o3)) {
-                  if ((Character) o3 != ',') {
-                    System.out.println(
-                        "We found a character that is not a comma. That should not be possible"
-                            + "\r\n");
-                  }
-                } else if (String.class.isInstance(o3)) {
-                  literals.add(filterExtras((String) o3));
+              int innerMostStart = ivo.getListStart(jj);
+              int innerMostEnd = innerMostStart + ivo.getListSize(jj);
+              for (int jjj = innerMostStart; jjj < innerMostEnd; jjj++) {
+                int innerMostKind = ivo.getKind(jjj);
+                if (innerMostKind != EntityInstance.REFERENCE
+                    && innerMostKind != EntityInstance.LIST) {
+                  literals.add(ivo.getLiteral(jjj));
                 } else {
                   System.out.println(
                       "Nothing happened. Not sure if this is good or bad, possible or not."
@@ -878,22 +1108,19 @@ public class RDFWriter {
               // and reset typeremembrance for the next case (e.g.
               // IFCARCINDEX((4,5))).
 
-              if ((evo != null)
-                  && (evo.getDerivedAttributeList() != null)
-                  && (evo.getDerivedAttributeList().size() > attributePointer)) {
+              if (plan.hasAttribute(attributePointer)) {
 
-                OntClass cl = ontModel.getOntClass(getOntNS() + typeRemembrance.getName());
+                OntResource range = plans.getTypeRange(typeRemembrance);
                 Resource r1 =
                     getResource(
-                        getBaseURI() + createLocalName(typeRemembrance.getName() + "_" + IDcounter),
-                        cl);
+                        getBaseURI() + createGeneratedName(typeRemembrance.getName()),
+                        range);
                 IDcounter++;
-                OntResource range = ontModel.getOntResource(getOntNS() + typeRemembrance.getName());
 
                 String[] primTypeArr = typeRemembrance.getPrimarytype().split(" ");
 
-                String primType = getOntNS() + primTypeArr[primTypeArr.length - 1].replace(";", "");
-                OntResource listrange = ontModel.getOntResource(primType);
+                String primType = primTypeArr[primTypeArr.length - 1].replace(";", "");
+                OntResource listrange = plans.getOntResource(primType);
 
                 List<Object> literalObjects = new ArrayList<Object>();
                 literalObjects.addAll(literals);
@@ -906,77 +1133,57 @@ public class RDFWriter {
 
               typeRemembrance = null;
               literals.clear();
-            } else {
-              System.out.println(
-                  "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
             }
           }
         } else {
-          LinkedList<Object> tmpListInList = (LinkedList<Object>) o1;
-          for (int jj = 0; jj < tmpListInList.size(); jj++) {
-            Object o2 = tmpListInList.get(jj);
-            if (Character.class.isInstance(o2)) {
-              if ((Character) o2 != ',') {
-                System.out.println(
-                    "We found a character that is not a comma. That should not be possible"
-                        + "\r\n");
-              }
-            } else if (String.class.isInstance(o2)) {
-              literals.add(filterExtras((String) o2));
-            } else if (IFCVO.class.isInstance(o2)) {
-              IFCVOs.add((IFCVO) o2);
-            } else if (LinkedList.class.isInstance(o2)) {
-              String propURI =
-                  evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-              OntProperty p = ontModel.getOntProperty(getOntNS() + propURI);
-              OntResource typerange = p.getRange();
+          for (int jj = innerStart; jj < innerEnd; jj++) {
+            int innerKind = ivo.getKind(jj);
+            if (innerKind != EntityInstance.REFERENCE && innerKind != EntityInstance.LIST) {
+              literals.add(ivo.getLiteral(jj));
+            } else if (innerKind == EntityInstance.REFERENCE) {
+              references.add(ivo.getReference(jj));
+            } else {
+              OntResource typerange = plan.getAttribute(attributePointer).getRange();
               throw IfcDataFormatException.valueOutOfRange(
-                  "#" + ivo.getLineNum(), tmpListInList.toString(), typerange.getLocalName());
+                  "#" + ivo.getLineNum(), ivo.toString(j), typerange.getLocalName());
               //            if (logToFile)
               //                bw.write("*ERROR 19*: Found List of List of List. Code cannot handle
               // that." + "\r\n");
               //            System.err.println("*ERROR 19*: Found List of List of List. Code cannot
               // handle that.");
-            } else {
-              System.out.println(
-                  "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
             }
           }
-          if ((evo != null)
-              && (evo.getDerivedAttributeList() != null)
-              && (evo.getDerivedAttributeList().size() > attributePointer)) {
-
-            String propURI =
-                getOntNS() + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-            OntProperty p = ontModel.getOntProperty(propURI);
-            OntClass typerange = p.getRange().asClass();
-
-            if (typerange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
-              String listvaluepropURI =
-                  typerange.getLocalName().substring(0, typerange.getLocalName().length() - 5);
-              OntResource listrange = ontModel.getOntResource(getOntNS() + listvaluepropURI);
+          if (plan.hasAttribute(attributePointer)) {
+
+            final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+            OntResource typerange = attribute.getRange();
+
+            if (attribute.getRangeKind() == EntityPlan.LIST) {
+              OntResource listrange = attribute.getListValueRange();
               Resource r1 =
                   getResource(
-                      getBaseURI() + createLocalName(listvaluepropURI + "_" + IDcounter),
+                      getBaseURI() + createGeneratedName(listrange.getLocalName()),
                       listrange);
               //         Resource r1 = getResource(getBaseURI() + listvaluepropURI + "_" +
               // IDcounter, listrange);
               IDcounter++;
               List<Object> objects = new ArrayList<Object>();
-              if (IFCVOs.size() > 0) {
-                objects.addAll(IFCVOs);
-                OntResource listcontentrange = getListContentType(listrange.asClass());
+              if (references.size() > 0) {
+                objects.addAll(references);
+                OntResource listcontentrange =
+                    getListContentType(rangeClassifier.asClass(listrange));
                 addDirectRegularListProperty(r1, listrange, listcontentrange, objects, 1, ivo);
               } else if (literals.size() > 0) {
                 objects.addAll(literals);
-                OntResource listcontentrange = getListContentType(listrange.asClass());
+                OntResource listcontentrange =
+                    getListContentType(rangeClassifier.asClass(listrange));
                 addDirectRegularListProperty(r1, listrange, listcontentrange, objects, 0, ivo);
               }
               listRemembranceResources.add(r1);
             } else {
-              if (IFCVOs.size() > 0) {
+              if (references.size() > 0) {
                 throw IfcDataFormatException.valueOutOfRange(
-                    "#" + ivo.getLineNum(), IFCVOs.toString(), typerange.getLocalName());
+                    "#" + ivo.getLineNum(), references.toString(), typerange.getLocalName());
               } else if (literals.size() > 0) {
                 throw IfcDataFormatException.valueOutOfRange(
                     "#" + ivo.getLineNum(), literals.toString(), typerange.getLocalName());
@@ -985,27 +1192,20 @@ public class RDFWriter {
           }
 
           literals.clear();
-          IFCVOs.clear();
+          references.clear();
         }
-      } else {
-        System.out.println(
-            "We found something that is not an IFC entity, not a list, not a string, and not a character. Check!"
-                + "\r\n");
       }
     }
 
     // interpret parse
     if (literals.size() > 0) {
-      String propURI =
-          getOntNS() + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-      OntProperty p = ontModel.getOntProperty(propURI);
-      OntResource typerange = p.getRange();
+      final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+      OntProperty p = attribute.getProperty();
+      OntResource typerange = attribute.getRange();
       if (typeRemembrance != null) {
-        if ((evo != null)
-            && (evo.getDerivedAttributeList() != null)
-            && (evo.getDerivedAttributeList().size() > attributePointer)) {
-          if (typerange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList")))
-            addRegularListProperty(r, p, literals, typeRemembrance, ivo);
+        if (plan.hasAttribute(attributePointer)) {
+          if (attribute.getRangeKind() == EntityPlan.LIST)
+            addRegularListProperty(r, p, typerange, literals, typeRemembrance, ivo);
           else {
             addSinglePropertyFromTypeRemembrance(r, p, literals.getFirst(), typeRemembrance, ivo);
             if (literals.size() > 1) {
@@ -1017,11 +1217,9 @@ public class RDFWriter {
               "Nothing happened. Not sure if this is good or bad, possible or not." + "\r\n");
         }
         typeRemembrance = null;
-      } else if ((evo != null)
-          && (evo.getDerivedAttributeList() != null)
-          && (evo.getDerivedAttributeList().size() > attributePointer)) {
-        if (typerange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList")))
-          addRegularListProperty(r, p, literals, null, ivo);
+      } else if (plan.hasAttribute(attributePointer)) {
+        if (attribute.getRangeKind() == EntityPlan.LIST)
+          addRegularListProperty(r, p, typerange, literals, null, ivo);
         else
           for (int i = 0; i < literals.size(); i++)
             createLiteralProperty(r, p, typerange, literals.get(i), ivo);
@@ -1031,13 +1229,10 @@ public class RDFWriter {
       }
     }
     if (listRemembranceResources.size() > 0) {
-      if ((evo != null)
-          && (evo.getDerivedAttributeList() != null)
-          && (evo.getDerivedAttributeList().size() > attributePointer)) {
-        String propURI =
-            getOntNS() + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-        OntProperty p = ontModel.getOntProperty(propURI);
-        addListPropertyToGivenEntities(r, p, listRemembranceResources);
+      if (plan.hasAttribute(attributePointer)) {
+        final EntityPlan.Attribute attribute = plan.getAttribute(attributePointer);
+        addListPropertyToGivenEntities(
+            r, attribute.getProperty(), attribute.getRange(), listRemembranceResources);
       }
     }
 
@@ -1050,23 +1245,21 @@ public class RDFWriter {
   // --------------------------------------
 
   private void addSinglePropertyFromTypeRemembrance(
-      Resource r, OntProperty p, String literalString, TypeVO typeremembrance, IFCVO ivo)
+      Resource r, OntProperty p, String literalString, TypeVO typeremembrance, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    OntResource range = ontModel.getOntResource(getOntNS() + typeremembrance.getName());
+    OntResource range = plans.getTypeRange(typeremembrance);
 
-    if (range.isClass()) {
-      if (range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "ENUMERATION"))) {
+    if (rangeClassifier.isClass(range)) {
+      if (rangeClassifier.isEnumeration(range)) {
         // Check for ENUM
         addEnumProperty(r, p, range, literalString, ivo);
-      } else if (range
-          .asClass()
-          .hasSuperClass(expressModel.getOntClass(getExpressns() + "SELECT"))) {
+      } else if (rangeClassifier.isSelect(range)) {
         // Check for SELECT
         //             if (logToFile)
         //                  bw.write("*OK 24*: found subClass of SELECT Class, now doing nothing
         // with it: " + p + " - " + range.getLocalName() + " - " + literalString + "\r\n");
         createLiteralProperty(r, p, range, literalString, ivo);
-      } else if (range.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+      } else if (rangeClassifier.isList(range)) {
         // Check for LIST
         throw IfcDataFormatException.valueOutOfRange(
             "#" + ivo.getLineNum(), literalString, range.getLocalName());
@@ -1079,29 +1272,23 @@ public class RDFWriter {
     }
   }
 
-  private void addEnumProperty(
-      Resource r, Property p, OntResource range, String literalString, IFCVO ivo)
+  void addEnumProperty(
+      Resource r, Property p, OntResource range, String literalString, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    for (ExtendedIterator<? extends OntResource> instances = range.asClass().listInstances();
-        instances.hasNext(); ) {
-      OntResource rangeInstance = instances.next();
-      if (rangeInstance
-          .getProperty(RDFS.label)
-          .getString()
-          .equalsIgnoreCase(filterPoints(literalString))) {
-        getRdfWriter().triple(new Triple(r.asNode(), p.asNode(), rangeInstance.asNode()));
-        //               if (logToFile)
-        //                   bw.write("*OK 2*: added ENUM statement " + r.getLocalName() + " - " +
-        // p.getLocalName() + " - " + rangeInstance.getLocalName() + "\r\n");
-        return;
-      }
+    Node rangeInstance = rangeClassifier.getEnumerationValue(range, literalString);
+    if (rangeInstance != null) {
+      getRdfWriter().triple(new Triple(r.asNode(), p.asNode(), rangeInstance));
+      //               if (logToFile)
+      //                   bw.write("*OK 2*: added ENUM statement " + r.getLocalName() + " - " +
+      // p.getLocalName() + " - " + rangeInstance.getLocalName() + "\r\n");
+      return;
     }
     throw IfcDataFormatException.valueOutOfRange(
         "#" + ivo.getLineNum(), literalString, range.getLocalName());
   }
 
   private void addLiteralToResource(
-      Resource r1, OntProperty valueProp, String xsdType, String literalString, IFCVO ivo)
+      Resource r1, OntProperty valueProp, String xsdType, String literalString, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
     if (xsdType.equalsIgnoreCase("integer"))
       addLiteral(
@@ -1126,11 +1313,11 @@ public class RDFWriter {
             "#" + ivo.getLineNum(), literalString, "Boolean");
     } else if (xsdType.equalsIgnoreCase("logical")) {
       if (literalString.equalsIgnoreCase(".F."))
-        addProperty(r1, valueProp, expressModel.getResource(getExpressns() + "FALSE"));
+        addProperty(r1, valueProp, logicalFalse);
       else if (literalString.equalsIgnoreCase(".T."))
-        addProperty(r1, valueProp, expressModel.getResource(getExpressns() + "TRUE"));
+        addProperty(r1, valueProp, logicalTrue);
       else if (literalString.equalsIgnoreCase(".U."))
-        addProperty(r1, valueProp, expressModel.getResource(getExpressns() + "UNKNOWN"));
+        addProperty(r1, valueProp, logicalUnknown);
       else if (logToFile)
         throw IfcDataFormatException.valueOutOfRange(
             "#" + ivo.getLineNum(), literalString, "Logical");
@@ -1151,12 +1338,12 @@ public class RDFWriter {
       OntResource listrange,
       List<Object> el,
       int mySwitch,
-      IFCVO ivo)
+      EntityInstance ivo)
       throws IOException, IfcDataFormatException {
     // OntResource range = p.getRange();
-    if (range.isClass()) {
+    if (rangeClassifier.isClass(range)) {
       // OntResource listrange = getListContentType(range.asClass());
-      if (listrange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+      if (rangeClassifier.isList(listrange)) {
         System.out.println("Found unhandled ListOfList" + "\r\n");
       } else {
         List<Resource> reslist = new ArrayList<Resource>();
@@ -1166,7 +1353,7 @@ public class RDFWriter {
           else {
             Resource r1 =
                 getResource(
-                    getBaseURI() + createLocalName(range.getLocalName() + "_" + IDcounter), range);
+                    getBaseURI() + createGeneratedName(range.getLocalName()), range);
             reslist.add(r1);
             IDcounter++;
           }
@@ -1182,15 +1369,15 @@ public class RDFWriter {
         } else {
           for (int i = 0; i < reslist.size(); i++) {
             Resource r1 = reslist.get(i);
-            IFCVO vo = (IFCVO) el.get(i);
-            EntityVO evorange = ent.get(ExpressReader.formatClassName(((IFCVO) vo).getName()));
+            long id = (Long) el.get(i);
+            EntityPlan evorange = plans.get(getReferencedName(id));
             //      OntResource rclass = ontModel.getOntResource(getOntNS() + evorange.getName());
             //      Resource r2 = getResource(getBaseURI() + evorange.getName() + "_" + ((IFCVO)
             // vo).getLineNum(), rclass);
             Resource r2 =
                 ResourceFactory.createResource(
                     getBaseURI()
-                        + createLocalName(evorange.getName() + "_" + ((IFCVO) vo).getLineNum()));
+                        + createLocalName(evorange.getName() + "_" + id));
             //       Resource r2=ResourceFactory.createResource(getBaseURI() + evorange.getName() +
             // "_" + ((IFCVO) vo).getLineNum());
             //                       if (logToFile)
@@ -1201,7 +1388,7 @@ public class RDFWriter {
                 .triple(
                     new Triple(
                         r1.asNode(),
-                        listModel.getOntProperty(getListns() + "hasContents").asNode(),
+                        hasContents.asNode(),
                         r2.asNode()));
             //                        if (logToFile)
             //                            bw.write("*OK 22*: added property: " + r1.getLocalName() +
@@ -1212,7 +1399,7 @@ public class RDFWriter {
                   .triple(
                       new Triple(
                           r1.asNode(),
-                          listModel.getOntProperty(getListns() + "hasNext").asNode(),
+                          hasNext.asNode(),
                           reslist.get(i + 1).asNode()));
               //                            if (logToFile)
               //                                bw.write("*OK 23*: added property: " +
@@ -1226,21 +1413,24 @@ public class RDFWriter {
   }
 
   private void addRegularListProperty(
-      Resource r, OntProperty p, List<String> el, TypeVO typeRemembranceOverride, IFCVO ivo)
+      Resource r,
+      OntProperty p,
+      OntResource range,
+      List<String> el,
+      TypeVO typeRemembranceOverride,
+      EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    OntResource range = p.getRange();
-    if (range.isClass()) {
-      OntResource listrange = getListContentType(range.asClass());
+    if (rangeClassifier.isClass(range)) {
+      OntResource listrange = getListContentType(rangeClassifier.asClass(range));
       if (typeRemembranceOverride != null) {
-        OntClass cla = ontModel.getOntClass(getOntNS() + typeRemembranceOverride.getName());
-        listrange = cla;
+        listrange = plans.getTypeRange(typeRemembranceOverride);
       }
 
       if (listrange == null) {
         System.out.println(
             "We could not find what kind of content is expected in the LIST." + "\r\n");
       } else {
-        if (listrange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+        if (rangeClassifier.isList(listrange)) {
           throw IfcDataFormatException.valueOutOfRange(
               "#" + ivo.getLineNum(), el.toString(), range.getLocalName());
         } else {
@@ -1249,7 +1439,7 @@ public class RDFWriter {
           for (int ii = 0; ii < el.size(); ii++) {
             Resource r1 =
                 getResource(
-                    getBaseURI() + createLocalName(range.getLocalName() + "_" + IDcounter), range);
+                    getBaseURI() + createGeneratedName(range.getLocalName()), range);
             //                        Resource r1 = getResource(getBaseURI() + range.getLocalName()
             // + "_" + IDcounter, range);
             reslist.add(r1);
@@ -1268,23 +1458,19 @@ public class RDFWriter {
     }
   }
 
-  private void createLiteralProperty(
-      Resource r, OntResource p, OntResource range, String literalString, IFCVO ivo)
+  void createLiteralProperty(
+      Resource r, OntResource p, OntResource range, String literalString, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
-    String xsdType = getXSDTypeFromRange(range);
-    if (xsdType == null) {
-      xsdType = getXSDTypeFromRangeExpensiveMethod(range);
-    }
+    String xsdType = rangeClassifier.getXSDType(range);
     if (xsdType != null) {
-      String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
-      OntProperty valueProp = expressModel.getOntProperty(getExpressns() + "has" + xsdTypeCAP);
+      OntProperty valueProp = rangeClassifier.getValueProperty(xsdType);
       String key = valueProp.toString() + ":" + xsdType + ":" + literalString;
 
       //           Resource r1 = propertyResourceMap.get(key);
       //           if (r1 == null) {
       Resource r1 =
           ResourceFactory.createResource(
-              getBaseURI() + createLocalName(range.getLocalName() + "_" + IDcounter));
+              getBaseURI() + createGeneratedName(range.getLocalName()));
       //              Resource r1 = ResourceFactory.createResource(getBaseURI() +
       // range.getLocalName() + "_" + IDcounter);
       getRdfWriter().triple(new Triple(r1.asNode(), RDF.type.asNode(), range.asNode()));
@@ -1304,13 +1490,12 @@ public class RDFWriter {
     }
   }
 
-  private void addListPropertyToGivenEntities(Resource r, OntProperty p, List<Resource> el)
-      throws IOException {
-    OntResource range = p.getRange();
-    if (range.isClass()) {
-      OntResource listrange = getListContentType(range.asClass());
+  private void addListPropertyToGivenEntities(
+      Resource r, OntProperty p, OntResource range, List<Resource> el) throws IOException {
+    if (rangeClassifier.isClass(range)) {
+      OntResource listrange = getListContentType(rangeClassifier.asClass(range));
 
-      if (listrange.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
+      if (rangeClassifier.isList(listrange)) {
         //                if (logToFile)
         //                   bw.write("*OK 20*: Handling list of list" + "\r\n");
         listrange = range;
@@ -1319,7 +1504,7 @@ public class RDFWriter {
         Resource r1 = el.get(i);
         Resource r2 =
             ResourceFactory.createResource(
-                getBaseURI() + createLocalName(range.getLocalName() + "_" + IDcounter));
+                getBaseURI() + createGeneratedName(range.getLocalName()));
         //                Resource r2 = ResourceFactory.createResource(getBaseURI() +
         // range.getLocalName() + "_" + IDcounter); // was
         // listrange
@@ -1330,7 +1515,7 @@ public class RDFWriter {
         IDcounter++;
         Resource r3 =
             ResourceFactory.createResource(
-                getBaseURI() + createLocalName(range.getLocalName() + "_" + IDcounter));
+                getBaseURI() + createGeneratedName(range.getLocalName()));
         //               Resource r3 = ResourceFactory.createResource(getBaseURI() +
         // range.getLocalName() + "_" + IDcounter);
 
@@ -1344,7 +1529,7 @@ public class RDFWriter {
             .triple(
                 new Triple(
                     r2.asNode(),
-                    listModel.getOntProperty(getListns() + "hasContents").asNode(),
+                    hasContents.asNode(),
                     r1.asNode()));
         //               if (logToFile)
         //                    bw.write("*OK 16*: added property: " + r2.getLocalName() + " - " +
@@ -1355,7 +1540,7 @@ public class RDFWriter {
               .triple(
                   new Triple(
                       r2.asNode(),
-                      listModel.getOntProperty(getListns() + "hasNext").asNode(),
+                      hasNext.asNode(),
                       r3.asNode()));
           //                    if (logToFile)
           //                        bw.write("*OK 17*: added property: " + r2.getLocalName() + " - "
@@ -1366,46 +1551,51 @@ public class RDFWriter {
   }
 
   private void fillClassInstanceList(
-      LinkedList<Object> tmpList, OntResource typerange, OntProperty p, Resource r)
+      EntityInstance ivo,
+      int listSlot,
+      OntResource typerange,
+      OntResource listrange,
+      OntProperty p,
+      Resource r)
       throws IOException, IfcDataFormatException {
     List<Resource> reslist = new ArrayList<Resource>();
-    List<IFCVO> entlist = new ArrayList<IFCVO>();
+    List<Long> entlist = new ArrayList<Long>();
 
     // createrequirednumberofresources
-    for (int i = 0; i < tmpList.size(); i++) {
-      if (IFCVO.class.isInstance(tmpList.get(i))) {
+    int start = ivo.getListStart(listSlot);
+    int end = start + ivo.getListSize(listSlot);
+    for (int i = start; i < end; i++) {
+      if (ivo.getKind(i) == EntityInstance.REFERENCE) {
         Resource r1 =
             getResource(
-                getBaseURI() + createLocalName(typerange.getLocalName() + "_" + IDcounter),
+                getBaseURI() + createGeneratedName(typerange.getLocalName()),
                 typerange);
         reslist.add(r1);
         IDcounter++;
-        entlist.add((IFCVO) tmpList.get(i));
-        if (i == 0) {
+        entlist.add(ivo.getReference(i));
+        if (i == start) {
           getRdfWriter().triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
         }
       }
     }
 
     // bindtheproperties
-    String listvaluepropURI =
-        getOntNS() + typerange.getLocalName().substring(0, typerange.getLocalName().length() - 5);
-    OntResource listrange = ontModel.getOntResource(listvaluepropURI);
-
     addClassInstanceListProperties(reslist, entlist, listrange);
   }
 
   private void addClassInstanceListProperties(
-      List<Resource> reslist, List<IFCVO> entlist, OntResource listrange) throws IOException {
-    OntProperty listp = listModel.getOntProperty(getListns() + "hasContents");
-    OntProperty isfollowed = listModel.getOntProperty(getListns() + "hasNext");
+      List<Resource> reslist, List<Long> entlist, OntResource listrange) throws IOException {
+    OntProperty listp = hasContents;
+    OntProperty isfollowed = hasNext;
 
     for (int i = 0; i < reslist.size(); i++) {
       Resource r = reslist.get(i);
+      long id = entlist.get(i);
+      String name = getReferencedName(id);
 
-      EntityVO evorange = ent.get(ExpressReader.formatClassName(entlist.get(i).getName()));
+      EntityPlan evorange = plans.get(name);
       if (evorange == null) {
-        TypeVO typerange = typ.get(ExpressReader.formatClassName(entlist.get(i).getName()));
+        TypeVO typerange = typ.get(ExpressReader.formatClassName(name));
         //               OntResource rclass = ontModel.getOntResource(getOntNS() +
         // typerange.getName());
         //                Resource r1 = getResource(getBaseURI() + typerange.getName() + "_" +
@@ -1413,7 +1603,7 @@ public class RDFWriter {
         Resource r1 =
             ResourceFactory.createResource(
                 getBaseURI()
-                    + createLocalName(typerange.getName() + "_" + entlist.get(i).getLineNum()));
+                    + createLocalName(typerange.getName() + "_" + id));
         //                Resource r1=ResourceFactory.createResource(getBaseURI() +
         // typerange.getName() + "_" + entlist.get(i).getLineNum());
         getRdfWriter().triple(new Triple(r.asNode(), listp.asNode(), r1.asNode()));
@@ -1428,7 +1618,7 @@ public class RDFWriter {
         Resource r1 =
             ResourceFactory.createResource(
                 getBaseURI()
-                    + createLocalName(evorange.getName() + "_" + entlist.get(i).getLineNum()));
+                    + createLocalName(evorange.getName() + "_" + id));
         //                Resource r1=ResourceFactory.createResource(getBaseURI() +
         // evorange.getName() + "_" + entlist.get(i).getLineNum());
         getRdfWriter().triple(new Triple(r.asNode(), listp.asNode(), r1.asNode()));
@@ -1448,14 +1638,12 @@ public class RDFWriter {
   }
 
   private void addListInstanceProperties(
-      List<Resource> reslist, List<String> listelements, OntResource listrange, IFCVO ivo)
+      List<Resource> reslist, List<String> listelements, OntResource listrange, EntityInstance ivo)
       throws IOException, IfcDataFormatException {
     // GetListType
-    String xsdType = getXSDTypeFromRange(listrange);
-    if (xsdType == null) xsdType = getXSDTypeFromRangeExpensiveMethod(listrange);
+    String xsdType = rangeClassifier.getXSDType(listrange);
     if (xsdType != null) {
-      String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
-      OntProperty valueProp = expressModel.getOntProperty(getExpressns() + "has" + xsdTypeCAP);
+      OntProperty valueProp = rangeClassifier.getValueProperty(xsdType);
 
       // Adding Content only if found
       for (int i = 0; i < reslist.size(); i++) {
@@ -1466,7 +1654,7 @@ public class RDFWriter {
         if (r2 == null) {
           r2 =
               ResourceFactory.createResource(
-                  getBaseURI() + createLocalName(listrange.getLocalName() + "_" + IDcounter));
+                  getBaseURI() + createGeneratedName(listrange.getLocalName()));
           getRdfWriter().triple(new Triple(r2.asNode(), RDF.type.asNode(), listrange.asNode()));
           //                   if (logToFile)
           //                       bw.write("*OK 19*: created resource: " + r2.getLocalName() +
@@ -1479,7 +1667,7 @@ public class RDFWriter {
             .triple(
                 new Triple(
                     r.asNode(),
-                    listModel.getOntProperty(getListns() + "hasContents").asNode(),
+                    hasContents.asNode(),
                     r2.asNode()));
         //               if (logToFile)
         //                   bw.write("*OK 11*: added property: " + r.getLocalName() + " - " +
@@ -1490,7 +1678,7 @@ public class RDFWriter {
               .triple(
                   new Triple(
                       r.asNode(),
-                      listModel.getOntProperty(getListns() + "hasNext").asNode(),
+                      hasNext.asNode(),
                       reslist.get(i + 1).asNode()));
           //                   if (logToFile)
           //                       bw.write("*OK 12*: added property: " + r.getLocalName() + " - " +
@@ -1503,50 +1691,27 @@ public class RDFWriter {
   }
 
   // HELPER METHODS
-  private String filterExtras(String txt) {
-    //       StringBuffer sb = new StringBuffer();
-
-    //      for (int n = 0; n < txt.length(); n++) {
-    //        char ch = txt.charAt(n);
-    //           switch (ch) {
-    //               case '\'':
-    //                   break;
-    //                case '=':
-    //                    break;
-    //               default:
-    //              sb.append(ch);
-    //            }
-    //       }
-    //       return sb.toString();
-    if (txt.startsWith("\'") || txt.startsWith("\"")) {
-      txt = txt.substring(1);
-    }
-    if (txt.endsWith("\'") || txt.endsWith("\"")) {
-      txt = txt.substring(0, txt.length() - 1);
-    }
-    return txt;
-  }
-
-  private String filterPoints(String txt) {
-    StringBuffer sb = new StringBuffer();
-    for (int n = 0; n < txt.length(); n++) {
-      char ch = txt.charAt(n);
-      switch (ch) {
-        case '.':
-          break;
-        default:
-          sb.append(ch);
-      }
+  /**
+   * Returns the entity type name of the instance with the given express id or {@code null}, if it
+   * does not exist. References to removed duplicates resolve to the remaining instance.
+   */
+  private String getReferencedName(long id) {
+    if (index != null) {
+      return index.getName(id);
+    }
+    EntityInstance vo = linemap.get(id);
+    if (vo == null) {
+      vo = listOfDuplicateLineEntries.get(id);
     }
-    return sb.toString();
+    return vo != null ? vo.getName() : null;
   }
 
-  private Long toLong(String txt) {
-    try {
-      return Long.valueOf(txt);
-    } catch (Exception e) {
-      return Long.MIN_VALUE;
+  /** Returns the type of a typed parameter like IFCLABEL('text') or {@code null}. */
+  private TypeVO getTypeOfKeyword(EntityInstance ivo, int slot) {
+    if (ivo.getKind(slot) != EntityInstance.KEYWORD) {
+      return null;
     }
+    return typ.get(ExpressReader.formatClassName(ivo.getToken(slot)));
   }
 
   private void addLiteral(Resource r, OntProperty valueProp, Literal l) {
@@ -1558,74 +1723,18 @@ public class RDFWriter {
   }
 
   private OntResource getListContentType(OntClass range) throws IOException {
-    if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "STRING_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "STRING_List")))
-      return expressModel.getOntResource(getExpressns() + "STRING");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "REAL_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "REAL_List")))
-      return expressModel.getOntResource(getExpressns() + "REAL");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "INTEGER_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "INTEGER_List")))
-      return expressModel.getOntResource(getExpressns() + "INTEGER");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "BINARY_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "BINARY_List")))
-      return expressModel.getOntResource(getExpressns() + "BINARY");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "BOOLEAN_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "BOOLEAN_List")))
-      return expressModel.getOntResource(getExpressns() + "BOOLEAN");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "LOGICAL_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "LOGICAL_List")))
-      return expressModel.getOntResource(getExpressns() + "LOGICAL");
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "NUMBER_List")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "NUMBER_List")))
-      return expressModel.getOntResource(getExpressns() + "NUMBER");
-    else if (range.asClass().hasSuperClass(listModel.getOntClass(getListns() + "OWLList"))) {
-      String listvaluepropURI =
-          getOntNS() + range.getLocalName().substring(0, range.getLocalName().length() - 5);
-      return ontModel.getOntResource(listvaluepropURI);
+    OntResource content = rangeClassifier.getListContentType(range);
+    if (content != null) {
+      return content;
+    } else if (rangeClassifier.isList(range)) {
+      return plans.getOntResource(
+          range.getLocalName().substring(0, range.getLocalName().length() - 5));
     } else {
       System.out.println("did not find listcontenttype for : " + range.getLocalName() + "\r\n");
       return null;
     }
   }
 
-  private String getXSDTypeFromRange(OntResource range) {
-    if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "STRING")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "STRING")))
-      return "string";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "REAL")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "REAL")))
-      return "double";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "INTEGER")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "INTEGER")))
-      return "integer";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "BINARY")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "BINARY")))
-      return "hexBinary";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "BOOLEAN")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "BOOLEAN")))
-      return "boolean";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "LOGICAL")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "LOGICAL")))
-      return "logical";
-    else if (range.asClass().getURI().equalsIgnoreCase(getExpressns() + "NUMBER")
-        || range.asClass().hasSuperClass(expressModel.getOntClass(getExpressns() + "NUMBER")))
-      return "double";
-    else return null;
-  }
-
-  private String getXSDTypeFromRangeExpensiveMethod(OntResource range) {
-    ExtendedIterator<OntClass> iter = range.asClass().listSuperClasses();
-    while (iter.hasNext()) {
-      OntClass superc = iter.next();
-      if (!superc.isAnon()) {
-        String type = getXSDTypeFromRange(superc);
-        if (type != null) return type;
-      }
-    }
-    return null;
-  }
-
   private Resource getResource(String uri, OntResource rclass) throws IfcDataFormatException {
     Resource r = resourceMap.get(uri);
     if (r == null) {
@@ -1637,6 +1746,11 @@ public class RDFWriter {
     return r;
   }
 
+  /** Returns the local name of a generated resource with the next id, e.g. IfcLabel_42. */
+  private String createGeneratedName(String prefix) {
+    return createLocalName(prefix + "_" + idMark + IDcounter);
+  }
+
   private String createLocalName(String s) {
     //	if(expIdInName==true){
     return s;
@@ -1654,11 +1768,77 @@ public class RDFWriter {
     this.removeDuplicates = removeDuplicates;
   }
 
+  public int getParseParallelism() {
+    return parseParallelism;
+  }
+
+  /**
+   * Sets the number of threads used to parse the DATA section. Parallel parsing is only used when
+   * the model is read from a buffer, a value of 1 parses on the calling thread.
+   */
+  public void setParseParallelism(int parseParallelism) {
+    this.parseParallelism = parseParallelism;
+  }
+
+  public int getEmitParallelism() {
+    return emitParallelism;
+  }
+
+  /**
+   * Sets the number of threads used to generate the triples of the instances, a value of 1
+   * generates them on the calling thread. It is not used in the bounded memory mode. Equal values
+   * of literal lists are shared only within a chunk of {@value #EMIT_CHUNK_SIZE} instances, if
+   * more than one thread is used.
+   */
+  public void setEmitParallelism(int emitParallelism) {
+    this.emitParallelism = emitParallelism;
+  }
+
+  /** Sets the number of instances per chunk of the parallel conversion, e.g. small for tests. */
+  void setEmitChunkSize(int emitChunkSize) {
+    this.emitChunkSize = emitChunkSize;
+  }
+
+  public boolean isBoundedMemory() {
+    return boundedMemory;
+  }
+
+  /**
+   * Sets whether the model is converted in two passes that keep only an index of the instances in
+   * memory instead of all instances. It needs the model in a buffer and does not remove duplicates.
+   * Equal values of literal lists are shared within an instance only.
+   */
+  public void setBoundedMemory(boolean boundedMemory) {
+    this.boundedMemory = boundedMemory;
+  }
+
   public void setLogToFile(boolean logToFile) {
     // TODO Auto-generated method stub
     this.logToFile = logToFile;
   }
 
+  /**
+   * @return the number of instances parsed from the DATA section
+   */
+  public long getEntityCount() {
+    return entityCount;
+  }
+
+  /**
+   * @return the registry of the timings and counters of the conversion
+   */
+  public ConversionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param metrics registry of the timings and counters of the conversion, e.g. shared by several
+   *     conversions
+   */
+  public void setMetrics(ConversionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   public StreamRDF getRdfWriter() {
     return rdfWriter;
   }
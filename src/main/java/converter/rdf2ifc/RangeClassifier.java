@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.jena.graph.Node;
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * Classifies the range classes of the ifcOWL properties by their EXPRESS base types. Each range is
+ * classified through the inference model only once, the result is kept in a table keyed by the URI
+ * of the range, so repeated lookups for the literals of a model are a single hash lookup. The
+ * tables are thread safe and can be shared by all conversions with the same schema.
+ *
+ * <p>Inference models update their derivation caches when they are queried, so they are not safe
+ * for concurrent reads. A range is therefore classified under a lock on its model, only the lookups
+ * in the tables run concurrently.
+ */
+public class RangeClassifier {
+
+  private static final String EXPRESS_NS = "https://w3id.org/express#";
+  private static final String LIST_NS = "https://w3id.org/list#";
+
+  /** EXPRESS simple types and the XSD types of their values, in the order they are checked */
+  private static final String[][] SIMPLE_TYPES = {
+    {"STRING", "string"},
+    {"REAL", "double"},
+    {"INTEGER", "integer"},
+    {"BINARY", "hexBinary"},
+    {"BOOLEAN", "boolean"},
+    {"LOGICAL", "logical"},
+    {"NUMBER", "double"}
+  };
+
+  /** Marks a range that is none of the simple types, concurrent maps do not take null values */
+  private static final int NONE = -1;
+
+  private final OntClass owlList;
+  private final OntClass enumeration;
+  private final OntClass select;
+  private final String[] simpleTypeURIs = new String[SIMPLE_TYPES.length];
+  private final OntClass[] simpleTypes = new OntClass[SIMPLE_TYPES.length];
+  private final String[] listTypeURIs = new String[SIMPLE_TYPES.length];
+  private final OntClass[] listTypes = new OntClass[SIMPLE_TYPES.length];
+  private final OntResource[] listContents = new OntResource[SIMPLE_TYPES.length];
+  private final Map<String, OntProperty> valueProperties = new HashMap<String, OntProperty>();
+
+  /** Index in {@link #SIMPLE_TYPES} of the XSD type of each range */
+  private final ConcurrentMap<String, Integer> xsdTypes = new ConcurrentHashMap<String, Integer>();
+  /** Index in {@link #SIMPLE_TYPES} of the list content type of each range */
+  private final ConcurrentMap<String, Integer> listContentTypes =
+      new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentMap<String, Boolean> lists = new ConcurrentHashMap<String, Boolean>();
+  private final ConcurrentMap<String, Boolean> enumerations =
+      new ConcurrentHashMap<String, Boolean>();
+  private final ConcurrentMap<String, Boolean> selects = new ConcurrentHashMap<String, Boolean>();
+  private final ConcurrentMap<String, Boolean> isClass = new ConcurrentHashMap<String, Boolean>();
+  /** Class views of the ranges, creating a view queries the model */
+  private final ConcurrentMap<String, OntClass> classes = new ConcurrentHashMap<String, OntClass>();
+  /** Values of each enumeration by their upper case label and their STEP notation, e.g. .TRUE. */
+  private final ConcurrentMap<String, Map<String, Node>> enumerationValues =
+      new ConcurrentHashMap<String, Map<String, Node>>();
+
+  /**
+   * @param expressModel the EXPRESS ontology
+   * @param listModel the list ontology
+   */
+  public RangeClassifier(OntModel expressModel, OntModel listModel) {
+    this.owlList = listModel.getOntClass(LIST_NS + "OWLList");
+    this.enumeration = expressModel.getOntClass(EXPRESS_NS + "ENUMERATION");
+    this.select = expressModel.getOntClass(EXPRESS_NS + "SELECT");
+    for (int i = 0; i < SIMPLE_TYPES.length; i++) {
+      simpleTypeURIs[i] = EXPRESS_NS + SIMPLE_TYPES[i][0];
+      simpleTypes[i] = expressModel.getOntClass(simpleTypeURIs[i]);
+      listTypeURIs[i] = simpleTypeURIs[i] + "_List";
+      listTypes[i] = expressModel.getOntClass(listTypeURIs[i]);
+      listContents[i] = expressModel.getOntResource(simpleTypeURIs[i]);
+      String xsdType = SIMPLE_TYPES[i][1];
+      String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
+      valueProperties.put(xsdType, expressModel.getOntProperty(EXPRESS_NS + "has" + xsdTypeCAP));
+    }
+  }
+
+  /**
+   * Returns the XSD type of the values of a range. The range is checked against the EXPRESS
+   * simple types first and then, if none matches, each of its named super classes.
+   *
+   * @param range range class of a property
+   * @return the XSD type, e.g. "double", or {@code null}
+   */
+  public String getXSDType(OntResource range) {
+    String uri = range.getURI();
+    Integer type = uri != null ? xsdTypes.get(uri) : null;
+    if (type == null) {
+      synchronized (range.getModel()) {
+        type = classify(range.asClass(), simpleTypeURIs, simpleTypes);
+        ExtendedIterator<OntClass> iter = range.asClass().listSuperClasses();
+        while (type == NONE && iter.hasNext()) {
+          OntClass superc = iter.next();
+          if (!superc.isAnon()) {
+            type = classify(superc, simpleTypeURIs, simpleTypes);
+          }
+        }
+      }
+      if (uri != null) {
+        xsdTypes.putIfAbsent(uri, type);
+      }
+    }
+    return type == NONE ? null : SIMPLE_TYPES[type][1];
+  }
+
+  /**
+   * @param xsdType an XSD type returned by {@link #getXSDType(OntResource)}
+   * @return the EXPRESS property holding values of the type, e.g. express:hasDouble
+   */
+  public OntProperty getValueProperty(String xsdType) {
+    return valueProperties.get(xsdType);
+  }
+
+  /**
+   * Returns the content type of an EXPRESS list of simple values, e.g. express:REAL for a range
+   * derived from express:REAL_List.
+   *
+   * @param range range class of a property
+   * @return the EXPRESS simple type or {@code null}, if the range is no such list
+   */
+  public OntResource getListContentType(OntClass range) {
+    String uri = range.getURI();
+    Integer type = uri != null ? listContentTypes.get(uri) : null;
+    if (type == null) {
+      synchronized (range.getModel()) {
+        type = classify(range, listTypeURIs, listTypes);
+      }
+      if (uri != null) {
+        listContentTypes.putIfAbsent(uri, type);
+      }
+    }
+    return type == NONE ? null : listContents[type];
+  }
+
+  /**
+   * @param range a resource of the ontology, e.g. the range of a property
+   * @return whether the resource is a class
+   */
+  public boolean isClass(OntResource range) {
+    String uri = range.getURI();
+    Boolean result = uri != null ? isClass.get(uri) : null;
+    if (result == null) {
+      synchronized (range.getModel()) {
+        result = range.isClass();
+      }
+      if (uri != null) {
+        isClass.putIfAbsent(uri, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param range a class of the ontology, e.g. the range of a property
+   * @return the resource as class
+   */
+  public OntClass asClass(OntResource range) {
+    String uri = range.getURI();
+    OntClass result = uri != null ? classes.get(uri) : null;
+    if (result == null) {
+      synchronized (range.getModel()) {
+        result = range.asClass();
+      }
+      if (uri != null) {
+        classes.putIfAbsent(uri, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param range range class of a property
+   * @return whether the range is a list:OWLList, i.e. an ordered list of values
+   */
+  public boolean isList(OntResource range) {
+    return hasSuperClass(range, owlList, lists);
+  }
+
+  /**
+   * @param range range class of a property
+   * @return whether the range is an express:ENUMERATION
+   */
+  public boolean isEnumeration(OntResource range) {
+    return hasSuperClass(range, enumeration, enumerations);
+  }
+
+  /**
+   * @param range range class of a property
+   * @return whether the range is an express:SELECT
+   */
+  public boolean isSelect(OntResource range) {
+    return hasSuperClass(range, select, selects);
+  }
+
+  /**
+   * Looks up the value of an enumeration. The dictionary of each enumeration is built on its first
+   * lookup, values written like in the file, e.g. {@code .NOTDEFINED.}, are then found without
+   * creating a string.
+   *
+   * @param range an enumeration range class
+   * @param literal the value in STEP notation or its label, case is ignored
+   * @return the enumeration instance with the label or {@code null}
+   */
+  public Node getEnumerationValue(OntResource range, String literal) {
+    String uri = range.getURI();
+    Map<String, Node> values = uri != null ? enumerationValues.get(uri) : null;
+    if (values == null) {
+      values = readEnumerationValues(range);
+      if (uri != null) {
+        enumerationValues.putIfAbsent(uri, values);
+      }
+    }
+    Node value = values.get(literal);
+    if (value == null) {
+      value = values.get(normalizeLabel(literal));
+    }
+    return value;
+  }
+
+  private static Map<String, Node> readEnumerationValues(OntResource range) {
+    Map<String, Node> values = new HashMap<String, Node>();
+    synchronized (range.getModel()) {
+      for (ExtendedIterator<? extends OntResource> instances = range.asClass().listInstances();
+          instances.hasNext(); ) {
+        OntResource rangeInstance = instances.next();
+        Statement label = rangeInstance.getProperty(RDFS.label);
+        if (label != null) {
+          String key = normalizeLabel(label.getString());
+          // the first instance with a label wins, like in a scan of the instances
+          values.putIfAbsent(key, rangeInstance.asNode());
+          values.putIfAbsent("." + key + ".", rangeInstance.asNode());
+        }
+      }
+    }
+    return values;
+  }
+
+  /** Removes the points of the STEP notation and ignores case. */
+  private static String normalizeLabel(String literal) {
+    return literal.replace(".", "").toUpperCase(Locale.ROOT);
+  }
+
+  private static boolean hasSuperClass(
+      OntResource range, OntClass type, ConcurrentMap<String, Boolean> memo) {
+    String uri = range.getURI();
+    Boolean result = uri != null ? memo.get(uri) : null;
+    if (result == null) {
+      synchronized (range.getModel()) {
+        result = range.asClass().hasSuperClass(type);
+      }
+      if (uri != null) {
+        memo.putIfAbsent(uri, result);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the index of the first of the types that the range is or is derived from. */
+  private static int classify(OntClass range, String[] typeURIs, OntClass[] types) {
+    for (int i = 0; i < types.length; i++) {
+      if (typeURIs[i].equalsIgnoreCase(range.getURI()) || range.hasSuperClass(types[i])) {
+        return i;
+      }
+    }
+    return NONE;
+  }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide cache of the loaded {@link IfcSchema}s. Each schema is loaded once per IFC version
+ * on first use, concurrent requests for the same version wait for the same load. The schemas are
+ * shared read-only by all conversions.
+ */
+public class SchemaRegistry {
+
+  private static final ConcurrentMap<String, IfcSchema> schemas =
+      new ConcurrentHashMap<String, IfcSchema>();
+
+  private SchemaRegistry() {}
+
+  /**
+   * Returns the schema of an IFC version and loads it, if it is not cached yet.
+   *
+   * @param version the IFC version
+   * @return the shared schema
+   * @throws IOException if the schema cannot be loaded
+   */
+  public static IfcSchema getSchema(IfcVersion version) throws IOException {
+    try {
+      return schemas.computeIfAbsent(version.getLabel(), label -> loadUnchecked(version));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Loads the schemas of the given IFC versions, e.g. at startup, so that the first conversions do
+   * not pay for it.
+   *
+   * @param versions the IFC versions
+   * @throws IOException if a schema cannot be loaded
+   */
+  public static void preload(IfcVersion... versions) throws IOException {
+    for (IfcVersion version : versions) {
+      getSchema(version);
+    }
+  }
+
+  /**
+   * @param version the IFC version
+   * @return whether the schema of the version is loaded
+   */
+  public static boolean isLoaded(IfcVersion version) {
+    return schemas.containsKey(version.getLabel());
+  }
+
+  /** Drops all cached schemas, they are loaded again on their next use. */
+  public static void clear() {
+    schemas.clear();
+  }
+
+  private static IfcSchema loadUnchecked(IfcVersion version) {
+    try {
+      return IfcSchema.load(version);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
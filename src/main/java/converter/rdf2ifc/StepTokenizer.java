@@ -0,0 +1,522 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single pass tokenizer for the entity instances of an ISO-10303-21 (IFC SPF) file. It works on
+ * the raw bytes of the file, recognises statement boundaries, quoted strings, comments and nested
+ * lists directly and produces one {@link EntityInstance} per entity instance. Attribute values are
+ * classified and stored as typed slots over the bytes of the statement while they are read. No
+ * string is created while parsing, only when a value is requested, e.g. by {@link
+ * EntityInstance#getLiteral(int)}.
+ *
+ * <p>Statements that are not entity instances (header entries, section keywords) are skipped.
+ */
+public class StepTokenizer implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[] NO_TEXT = new byte[0];
+  private static final long[] NO_SLOTS = new long[0];
+
+  private final InputStream in;
+  private final ByteBuffer source;
+  private final Charset charset;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+
+  /** Offset of {@link #buffer} in the input */
+  private long bufferOffset = 0;
+
+  /** Offset of the statement of the last instance in the input */
+  private long offset = -1;
+
+  /** Text of the current statement after the '=' without line breaks and insignificant blanks */
+  private byte[] text = new byte[1024];
+
+  private int textLength = 0;
+
+  /** Slots of the lists that are still open, the values of each list follow each other */
+  private long[] pending = new long[256];
+
+  private int pendingLength = 0;
+
+  /** Start of each open list in {@link #pending} */
+  private int[] levels = new int[16];
+
+  private int depth = 0;
+
+  /** Slots of the closed lists, each list's children form a contiguous range */
+  private long[] slots = new long[256];
+
+  private int slotsLength = 0;
+  private int attributeStart = 0;
+  private int attributeCount = 0;
+
+  /** Entity type names are shared between all instances of the same type */
+  private final Map<String, String> names = new HashMap<String, String>();
+
+  /**
+   * @param in input stream of the IFC SPF file, it is closed together with the tokenizer
+   */
+  public StepTokenizer(InputStream in) {
+    this(in, Charset.defaultCharset());
+  }
+
+  /**
+   * @param in input stream of the IFC SPF file, it is closed together with the tokenizer
+   * @param charset charset used to decode names and attribute values
+   */
+  public StepTokenizer(InputStream in, Charset charset) {
+    this.in = in;
+    this.source = null;
+    this.charset = charset;
+  }
+
+  /**
+   * @param source content of the IFC SPF file, e.g. a memory mapped file. It is read from its
+   *     current position to its limit, the position of the given buffer is not changed.
+   * @param charset charset used to decode names and attribute values
+   */
+  public StepTokenizer(ByteBuffer source, Charset charset) {
+    this.in = null;
+    this.source = source.duplicate();
+    this.charset = charset;
+  }
+
+  /**
+   * Reads the next entity instance.
+   *
+   * @return the next entity instance or {@code null} at the end of the input
+   * @throws IOException
+   */
+  public EntityInstance next() throws IOException {
+    return next(true);
+  }
+
+  /**
+   * Reads the express id and type name of the next entity instance and skips its attributes, which
+   * is considerably cheaper than {@link #next()}.
+   *
+   * @return the next entity instance without attributes or {@code null} at the end of the input
+   * @throws IOException
+   */
+  public EntityInstance nextWithoutAttributes() throws IOException {
+    return next(false);
+  }
+
+  /**
+   * @return the offset of the statement of the instance returned last, relative to the start of
+   *     the input, or -1 before the first instance
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  private EntityInstance next(boolean attributes) throws IOException {
+    int b;
+    while ((b = skipBlanks()) != -1) {
+      if (b == '#') {
+        long statementOffset = bufferOffset + position - 1;
+        EntityInstance instance = readInstance(attributes);
+        if (instance != null) {
+          offset = statementOffset;
+          return instance;
+        }
+      } else {
+        skipStatement(b);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in != null) {
+      in.close();
+    }
+  }
+
+  /**
+   * Parses an entity instance after its leading '#'.
+   *
+   * @param attributes whether to parse the attributes or to skip them
+   * @return the instance or {@code null}, if the statement is not of the form #id=...;
+   */
+  private EntityInstance readInstance(boolean attributes) throws IOException {
+    long lineNum = 0;
+    int b = read();
+    while (b >= '0' && b <= '9') {
+      lineNum = lineNum * 10 + (b - '0');
+      b = read();
+    }
+    while (isBlank(b)) {
+      b = read();
+    }
+    if (b != '=') {
+      skipStatement(b);
+      return null;
+    }
+
+    textLength = 0;
+    slotsLength = 0;
+    pendingLength = 0;
+    depth = 0;
+    attributeStart = 0;
+    attributeCount = 0;
+
+    // entity type name
+    b = skipBlanks();
+    while (b != -1 && b != '(' && b != ';') {
+      if (!isBlank(b)) {
+        append(b);
+      }
+      b = read();
+    }
+    String name = name(0, textLength);
+    if (!attributes) {
+      skipStatement(b);
+      return new EntityInstance(lineNum, name, NO_TEXT, NO_SLOTS, 0, 0, charset);
+    }
+    if (b == '(') {
+      append(b);
+      readAttributes();
+      b = read();
+    }
+    // anything between the closing parenthesis and the end of the statement
+    while (b != -1 && b != ';') {
+      if (b == '\'') {
+        append(b);
+        readString();
+      } else if (b == '/' && peek() == '*') {
+        skipComment();
+      } else if (!isBlank(b)) {
+        append(b);
+      }
+      b = read();
+    }
+    if (b == ';') {
+      append(b);
+    }
+    return new EntityInstance(
+        lineNum,
+        name,
+        Arrays.copyOf(text, textLength),
+        Arrays.copyOf(slots, slotsLength),
+        attributeStart,
+        attributeCount,
+        charset);
+  }
+
+  /**
+   * Parses the attribute list of an instance after its opening parenthesis up to and including the
+   * matching closing parenthesis.
+   */
+  private void readAttributes() throws IOException {
+    openList();
+    int tokenStart = textLength;
+    int b;
+    while ((b = read()) != -1) {
+      switch (b) {
+        case '\'':
+          append(b);
+          readString();
+          break;
+        case '(':
+          addToken(tokenStart);
+          append(b);
+          openList();
+          tokenStart = textLength;
+          break;
+        case ')':
+          addToken(tokenStart);
+          append(b);
+          closeList();
+          if (depth == 0) {
+            return;
+          }
+          tokenStart = textLength;
+          break;
+        case ',':
+          addToken(tokenStart);
+          append(b);
+          tokenStart = textLength;
+          break;
+        case ';':
+          // unbalanced parentheses, leave the statement end to the caller
+          addToken(tokenStart);
+          unread();
+          closeAllLists();
+          return;
+        case '/':
+          if (peek() == '*') {
+            skipComment();
+          } else {
+            append(b);
+          }
+          break;
+        default:
+          if (!isBlank(b)) {
+            append(b);
+          }
+      }
+    }
+    addToken(tokenStart);
+    closeAllLists();
+  }
+
+  /** Copies a quoted string after its opening quote up to and including the closing quote. */
+  private void readString() throws IOException {
+    boolean lineStart = false;
+    int b;
+    while ((b = read()) != -1) {
+      if (b == '\r' || b == '\n') {
+        // line breaks are not part of the string, neither are the blanks before and after them,
+        // like in the trimmed lines of a line based reader; the opening quote ends the loop
+        while ((text[textLength - 1] & 0xFF) <= ' ') {
+          textLength--;
+        }
+        lineStart = true;
+        continue;
+      }
+      if (lineStart && b <= ' ') {
+        continue;
+      }
+      lineStart = false;
+      append(b);
+      if (b == '\'') {
+        // a doubled quote is an escaped quote, the string goes on
+        if (peek() != '\'') {
+          return;
+        }
+        append(read());
+      }
+    }
+  }
+
+  /** Classifies the token text[tokenStart, textLength) and adds it to the innermost open list. */
+  private void addToken(int tokenStart) {
+    int length = textLength - tokenStart;
+    if (length <= 0) {
+      return;
+    }
+    int kind;
+    switch (text[tokenStart]) {
+      case '#':
+        addSlot(EntityInstance.reference(referenceId(tokenStart + 1)));
+        return;
+      case '$':
+        kind = EntityInstance.UNSET;
+        break;
+      case '*':
+        kind = EntityInstance.DERIVED;
+        break;
+      case '\'':
+        kind = EntityInstance.STRING;
+        break;
+      case '"':
+        kind = EntityInstance.BINARY;
+        break;
+      case '.':
+        kind = EntityInstance.ENUMERATION;
+        break;
+      default:
+        byte first = text[tokenStart];
+        if ((first >= '0' && first <= '9') || first == '-' || first == '+') {
+          kind = EntityInstance.NUMBER;
+        } else {
+          kind = EntityInstance.KEYWORD;
+        }
+    }
+    addSlot(EntityInstance.slice(kind, tokenStart, length));
+  }
+
+  private long referenceId(int start) {
+    if (start == textLength) {
+      return EntityInstance.INVALID_REFERENCE;
+    }
+    long id = 0;
+    for (int i = start; i < textLength; i++) {
+      byte b = text[i];
+      if (b < '0' || b > '9') {
+        return EntityInstance.INVALID_REFERENCE;
+      }
+      id = id * 10 + (b - '0');
+    }
+    return id;
+  }
+
+  private void addSlot(long slot) {
+    if (pendingLength == pending.length) {
+      pending = Arrays.copyOf(pending, pending.length * 2);
+    }
+    pending[pendingLength++] = slot;
+  }
+
+  private void openList() {
+    if (depth == levels.length) {
+      levels = Arrays.copyOf(levels, levels.length * 2);
+    }
+    levels[depth++] = pendingLength;
+  }
+
+  /**
+   * Moves the values of the innermost open list to the closed slots and adds the list itself to
+   * the enclosing list, or makes it the top level attribute list.
+   */
+  private void closeList() {
+    int start = levels[--depth];
+    int count = pendingLength - start;
+    if (slotsLength + count > slots.length) {
+      slots = Arrays.copyOf(slots, Math.max(slots.length * 2, slotsLength + count));
+    }
+    System.arraycopy(pending, start, slots, slotsLength, count);
+    int listStart = slotsLength;
+    slotsLength += count;
+    pendingLength = start;
+    if (depth == 0) {
+      attributeStart = listStart;
+      attributeCount = count;
+    } else {
+      addSlot(EntityInstance.list(listStart, count));
+    }
+  }
+
+  private void closeAllLists() {
+    while (depth > 0) {
+      closeList();
+    }
+  }
+
+  private String name(int start, int length) {
+    String name = new String(text, start, length, charset);
+    String shared = names.putIfAbsent(name, name);
+    return shared != null ? shared : name;
+  }
+
+  /** Skips the rest of a statement that is not an entity instance. */
+  private void skipStatement(int b) throws IOException {
+    while (b != -1 && b != ';') {
+      if (b == '\'') {
+        skipString();
+      } else if (b == '/' && peek() == '*') {
+        skipComment();
+      }
+      b = read();
+    }
+  }
+
+  private void skipString() throws IOException {
+    int b;
+    while ((b = read()) != -1) {
+      if (b == '\'') {
+        if (peek() != '\'') {
+          return;
+        }
+        read();
+      }
+    }
+  }
+
+  /** Skips a comment after its opening slash, the asterisk is the next byte. */
+  private void skipComment() throws IOException {
+    read();
+    int b;
+    while ((b = read()) != -1) {
+      if (b == '*' && peek() == '/') {
+        read();
+        return;
+      }
+    }
+  }
+
+  /** Returns the next byte that is neither blank nor part of a comment. */
+  private int skipBlanks() throws IOException {
+    int b;
+    while ((b = read()) != -1) {
+      if (b == '/' && peek() == '*') {
+        skipComment();
+      } else if (!isBlank(b)) {
+        return b;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isBlank(int b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+  }
+
+  private void append(int b) {
+    if (textLength == text.length) {
+      byte[] grown = new byte[text.length * 2];
+      System.arraycopy(text, 0, grown, 0, textLength);
+      text = grown;
+    }
+    text[textLength++] = (byte) b;
+  }
+
+  private int read() throws IOException {
+    if (position == limit && !fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  private int peek() throws IOException {
+    if (position == limit && !fill()) {
+      return -1;
+    }
+    return buffer[position] & 0xFF;
+  }
+
+  /** Steps back one byte, only valid directly after {@link #read()} returned a byte. */
+  private void unread() {
+    position--;
+  }
+
+  private boolean fill() throws IOException {
+    if (source != null) {
+      int n = Math.min(source.remaining(), buffer.length);
+      if (n == 0) {
+        return false;
+      }
+      source.get(buffer, 0, n);
+      bufferOffset += limit;
+      position = 0;
+      limit = n;
+      return true;
+    }
+    int n;
+    do {
+      n = in.read(buffer, 0, buffer.length);
+    } while (n == 0);
+    if (n < 0) {
+      return false;
+    }
+    bufferOffset += limit;
+    position = 0;
+    limit = n;
+    return true;
+  }
+}
@@ -1,17 +1,18 @@
 package demo;
 
+import converter.rdf2ifc.ConversionMetrics.Phase;
 import converter.rdf2ifc.IFC2RDFConverter;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import converter.rdf2ifc.RDFHandlerStreamRDF;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
-import org.eclipse.rdf4j.rio.RDFFormat;
+import utils.BatchLoader;
+import utils.ContextReplacer;
+import utils.LmdbSizingAdvisor;
+import utils.PipelinedRDFHandler;
 import utils.RepositoryUtils;
 
 public class Application {
@@ -24,58 +25,40 @@ public class Application {
     RepositoryConnection connection = null;
 
     try {
-      // ifc model
-      logMessage("Loading IFC model");
-      String ifcModel = Files.readString(Path.of(IFC_PATH), Charset.defaultCharset());
-      if (ifcModel == null) {
-        logMessage("ifcModel is null");
-        return;
-      }
-
-      logMessage("Converting ifc model to rdf");
-      File ifcTtlFile = new File(IFC_PATH + ".ttl");
-      if (!ifcTtlFile.exists()) {
-        IFC2RDFConverter ifc2RDFConverter = new IFC2RDFConverter();
-        FileOutputStream outputStream = new FileOutputStream(ifcTtlFile);
-        ifc2RDFConverter.convert(ifcModel, outputStream, null, null, null, false, false, false);
-        outputStream.close();
-      }
+      IFC2RDFConverter ifc2RDFConverter = new IFC2RDFConverter();
+      ifc2RDFConverter
+          .getMetrics()
+          .addListener(
+              (phase, nanos, metrics) -> {
+                // the batches are reported by the loader
+                if (phase != Phase.UPLOAD && phase != Phase.COMMIT) {
+                  logMessage(phase + " took " + nanos / 1_000_000 + " ms");
+                }
+              });
 
       RepositoryUtils repositoryUtils = new RepositoryUtils(RDF_4_J_SERVER);
       if (!repositoryUtils.exists(REPOSITORY_ID)) {
-        logMessage("Creating repository");
-        repositoryUtils.createRepository(REPOSITORY_ID);
+        long statements = LmdbSizingAdvisor.estimateStatements(Path.of(IFC_PATH));
+        logMessage("Creating repository for about " + statements + " statements");
+        repositoryUtils.createRepository(
+            REPOSITORY_ID, statements, LmdbSizingAdvisor.Profile.BULK_INGEST);
       }
 
       logMessage("Writing named graph");
       String graph = "http://example.org/" + IFC_FILE;
       connection = repositoryUtils.getConnection(REPOSITORY_ID);
 
-      logMessage("First transaction start");
-      connection.begin();
-
-      logMessage("Adding data to connection");
       var factory = SimpleValueFactory.getInstance();
       IRI context = factory.createIRI(graph);
-      connection.add(ifcTtlFile, RDFFormat.TURTLE, context);
-
-      logMessage("Committing first transaction");
-      connection.commit();
-      logMessage("First transaction committed");
-
-
-      logMessage("Beginning second transaction");
-      connection.begin();
 
-      logMessage("Clearing context");
-      connection.clear(context);
+      logMessage("Loading ifc model in batches");
+      loadModel(ifc2RDFConverter, connection, context);
+      logMessage("Model loaded");
 
-      logMessage("Adding data to connection");
-      connection.add(ifcTtlFile, RDFFormat.TURTLE, context);
-
-      logMessage("Committing second transaction");
-      connection.commit();
-      logMessage("Second transaction committed");
+      logMessage("Replacing ifc model");
+      replaceModel(ifc2RDFConverter, repositoryUtils, connection, context);
+      logMessage("Model replaced");
+      logMessage("Metrics\n" + ifc2RDFConverter.getMetrics());
 
       connection.close();
 
@@ -88,6 +71,60 @@ public class Application {
     }
   }
 
+  /**
+   * Converts the IFC model straight into the repository, committing a transaction per batch. The
+   * batches are committed on a thread of their own while the conversion goes on.
+   */
+  private static void loadModel(
+      IFC2RDFConverter ifc2RDFConverter, RepositoryConnection connection, IRI context)
+      throws Exception {
+    BatchLoader loader = new BatchLoader(connection, context);
+    loader.setRetries(3, RepositoryUtils.RETRY_DELAY_MILLIS);
+    loader.setMetrics(ifc2RDFConverter.getMetrics());
+    loader.setProgressListener(
+        (batches, statements) ->
+            logMessage("Committed batch " + batches + ", " + statements + " statements"));
+    try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(loader)) {
+      ifc2RDFConverter.convert(
+          Path.of(IFC_PATH),
+          new RDFHandlerStreamRDF(pipeline, connection.getValueFactory(), null),
+          null,
+          null,
+          false,
+          false,
+          false);
+    }
+  }
+
+  /** Converts the IFC model again and sends only its difference to the stored named graph. */
+  private static void replaceModel(
+      IFC2RDFConverter ifc2RDFConverter,
+      RepositoryUtils repositoryUtils,
+      RepositoryConnection connection,
+      IRI context)
+      throws Exception {
+    ContextReplacer replacer =
+        new ContextReplacer(
+            connection, context, () -> repositoryUtils.getConnection(REPOSITORY_ID));
+    try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(replacer)) {
+      ifc2RDFConverter.convert(
+          Path.of(IFC_PATH),
+          new RDFHandlerStreamRDF(pipeline, connection.getValueFactory(), null),
+          null,
+          null,
+          false,
+          false,
+          false);
+    }
+    logMessage(
+        replacer.getAddedStatements()
+            + " statements added, "
+            + replacer.getRemovedStatements()
+            + " removed, "
+            + replacer.getUnchangedStatements()
+            + " unchanged");
+  }
+
   public static void logMessage(String message) {
     LocalDateTime now = LocalDateTime.now();
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
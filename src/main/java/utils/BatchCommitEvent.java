@@ -0,0 +1,25 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight recorder event of a transaction of a connection, from its begin to its end. */
+@Name("ifc2rdf.BatchCommit")
+@Label("Batch Commit")
+@Category({"IFC2RDF"})
+@Description("Transaction of a repository connection, e.g. a batch of a load")
+final class BatchCommitEvent extends jdk.jfr.Event {
+
+  @Label("Repository")
+  String repositoryId;
+
+  @Label("Statements")
+  @Description("Statements added or removed in the transaction, if passed as collection")
+  long statementCount;
+
+  @Label("Committed")
+  @Description("False, if the transaction was rolled back")
+  boolean committed;
+}
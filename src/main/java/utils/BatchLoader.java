@@ -0,0 +1,284 @@
+package utils;
+
+import converter.rdf2ifc.ConversionMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Adds statements to a repository in a series of transactions of bounded size instead of a single
+ * one. The statements are collected until a batch is full, by number of statements or by their
+ * approximate size, and each batch is committed on its own. The transaction state held by the
+ * server is therefore bounded by the batch size and not by the size of the model.
+ *
+ * <p>As an {@link org.eclipse.rdf4j.rio.RDFHandler} it can be given to a Rio parser or, wrapped in
+ * a {@code converter.rdf2ifc.RDFHandlerStreamRDF}, to the IFC converter. The last batch is
+ * committed by {@link #endRDF()}.
+ *
+ * <p>Each batch is held in memory until it is committed, so a failed batch can be sent again. With
+ * {@link #setRetries(int, long)} failed batches are retried, and with {@link #resumeAfter(long)} an
+ * interrupted load of the same statement stream continues after the committed statements. Adding
+ * a statement twice has no effect, so a batch that was committed although its response was lost
+ * can be sent again safely.
+ */
+public class BatchLoader extends AbstractRDFHandler {
+
+  /** What happens to the committed batches, if a batch fails */
+  public enum FailurePolicy {
+    /** Keep the committed batches, the load can be resumed or repeated by the caller */
+    KEEP_COMMITTED,
+    /** Clear the contexts of the load, so no partial model remains in the repository */
+    CLEAR_CONTEXTS
+  }
+
+  /** Receives the progress of a load after every committed batch */
+  public interface ProgressListener {
+
+    /**
+     * @param batches number of batches committed so far
+     * @param statements number of statements committed so far
+     */
+    void batchCommitted(long batches, long statements);
+  }
+
+  public static final int DEFAULT_BATCH_STATEMENTS = 100_000;
+  public static final long DEFAULT_BATCH_BYTES = 64L << 20;
+
+  private final RepositoryConnection connection;
+  private final Resource[] contexts;
+
+  private int batchStatements = DEFAULT_BATCH_STATEMENTS;
+  private long batchBytes = DEFAULT_BATCH_BYTES;
+  private FailurePolicy failurePolicy = FailurePolicy.KEEP_COMMITTED;
+  private ProgressListener progressListener;
+  private int attempts = 1;
+  private long retryDelayMillis = 0;
+  private long skipStatements = 0;
+  private ConversionMetrics metrics;
+
+  private final List<Statement> batch = new ArrayList<Statement>();
+  private long bytes = 0;
+  private long committedBatches = 0;
+  private long committedStatements = 0;
+
+  /**
+   * @param connection connection to the repository, it is neither opened nor closed by the loader
+   *     and must not be in a transaction
+   * @param contexts named graphs the statements are added to, none for the contexts of the
+   *     statements
+   */
+  public BatchLoader(RepositoryConnection connection, Resource... contexts) {
+    this.connection = connection;
+    this.contexts = contexts;
+  }
+
+  /**
+   * @param batchStatements maximum number of statements per transaction
+   */
+  public void setBatchStatements(int batchStatements) {
+    if (batchStatements < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1: " + batchStatements);
+    }
+    this.batchStatements = batchStatements;
+  }
+
+  /**
+   * @param batchBytes maximum size of the statements per transaction, estimated by the length of
+   *     their values
+   */
+  public void setBatchBytes(long batchBytes) {
+    if (batchBytes < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1: " + batchBytes);
+    }
+    this.batchBytes = batchBytes;
+  }
+
+  /**
+   * @param failurePolicy what happens to the committed batches, if a batch fails
+   * @throws IllegalArgumentException if the contexts shall be cleared, but none are given, since
+   *     that would clear the whole repository
+   */
+  public void setFailurePolicy(FailurePolicy failurePolicy) {
+    if (failurePolicy == FailurePolicy.CLEAR_CONTEXTS && contexts.length == 0) {
+      throw new IllegalArgumentException("Clearing on failure needs the contexts of the load");
+    }
+    this.failurePolicy = failurePolicy;
+  }
+
+  /**
+   * @param attempts how often a batch is sent, before the load fails
+   * @param retryDelayMillis delay before the first retry, it grows linearly with every further
+   *     retry
+   */
+  public void setRetries(int attempts, long retryDelayMillis) {
+    if (attempts < 1 || retryDelayMillis < 0) {
+      throw new IllegalArgumentException(
+          "Invalid retries: " + attempts + " attempts, " + retryDelayMillis + " ms");
+    }
+    this.attempts = attempts;
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * Skips the first statements of the stream, which were committed by an earlier, interrupted load
+   * of the same statements. They are counted as committed.
+   *
+   * @param committedStatements number of statements committed by the earlier load, see {@link
+   *     #getCommittedStatements()}
+   */
+  public void resumeAfter(long committedStatements) {
+    if (committedStatements < 0) {
+      throw new IllegalArgumentException("Negative number of statements: " + committedStatements);
+    }
+    this.skipStatements = committedStatements;
+    this.committedStatements = committedStatements;
+  }
+
+  /**
+   * @param progressListener receives the progress after every committed batch or {@code null}
+   */
+  public void setProgressListener(ProgressListener progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * @param metrics receives the durations of sending and committing the batches and the number of
+   *     committed statements or {@code null}
+   */
+  public void setMetrics(ConversionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the number of batches committed so far
+   */
+  public long getCommittedBatches() {
+    return committedBatches;
+  }
+
+  /**
+   * @return the number of statements committed so far
+   */
+  public long getCommittedStatements() {
+    return committedStatements;
+  }
+
+  @Override
+  public void handleStatement(Statement st) {
+    if (skipStatements > 0) {
+      skipStatements--;
+      return;
+    }
+    batch.add(st);
+    bytes +=
+        st.getSubject().stringValue().length()
+            + st.getPredicate().stringValue().length()
+            + st.getObject().stringValue().length();
+    if (batch.size() >= batchStatements || bytes >= batchBytes) {
+      commitBatch();
+    }
+  }
+
+  @Override
+  public void endRDF() {
+    commitBatch();
+  }
+
+  /**
+   * Commits the collected statements in a transaction of their own. If the transaction fails, it
+   * is rolled back and retried as configured by {@link #setRetries(int, long)}. If the last attempt
+   * fails, the {@link FailurePolicy} is applied and the exception is thrown. With {@link
+   * FailurePolicy#KEEP_COMMITTED} the statements of the failed batch are kept, so the commit can be
+   * tried again.
+   *
+   * @throws RepositoryException if the batch cannot be committed
+   */
+  public void commitBatch() throws RepositoryException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    for (int attempt = 1; ; attempt++) {
+      try {
+        long start = System.nanoTime();
+        connection.begin();
+        connection.add(batch, contexts);
+        long sent = System.nanoTime();
+        connection.commit();
+        if (metrics != null) {
+          metrics.recordPhase(ConversionMetrics.Phase.UPLOAD, sent - start);
+          metrics.recordPhase(ConversionMetrics.Phase.COMMIT, System.nanoTime() - sent);
+          metrics.add(ConversionMetrics.Counter.STATEMENTS_COMMITTED, batch.size());
+        }
+        break;
+      } catch (RepositoryException e) {
+        rollback(e);
+        if (attempt < attempts) {
+          waitForRetry(attempt, e);
+          continue;
+        }
+        RepositoryException failure =
+            new RepositoryException(
+                "Batch "
+                    + (committedBatches + 1)
+                    + " failed after "
+                    + committedStatements
+                    + " committed statements, policy "
+                    + failurePolicy,
+                e);
+        if (failurePolicy == FailurePolicy.CLEAR_CONTEXTS) {
+          clearContexts(failure);
+        }
+        throw failure;
+      }
+    }
+    committedBatches++;
+    committedStatements += batch.size();
+    batch.clear();
+    bytes = 0;
+    if (progressListener != null) {
+      progressListener.batchCommitted(committedBatches, committedStatements);
+    }
+  }
+
+  /** Rolls back the failed transaction, if the connection still allows it */
+  private void rollback(RepositoryException cause) {
+    try {
+      if (connection.isActive()) {
+        connection.rollback();
+      }
+    } catch (RepositoryException e) {
+      cause.addSuppressed(e);
+    }
+  }
+
+  private void waitForRetry(int attempt, RepositoryException cause) {
+    try {
+      Thread.sleep(retryDelayMillis * attempt);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RepositoryException(
+          "Interrupted before retrying batch " + (committedBatches + 1), cause);
+    }
+  }
+
+  private void clearContexts(RepositoryException cause) {
+    try {
+      connection.begin();
+      connection.clear(contexts);
+      connection.commit();
+      committedBatches = 0;
+      committedStatements = 0;
+      batch.clear();
+      bytes = 0;
+    } catch (RepositoryException e) {
+      if (connection.isActive()) {
+        connection.rollback();
+      }
+      cause.addSuppressed(e);
+    }
+  }
+}
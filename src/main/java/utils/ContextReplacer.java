@@ -0,0 +1,382 @@
+package utils;
+
+import converter.rdf2ifc.ConversionMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Replaces the statements of a named graph by a new model and sends only the difference to the
+ * repository, instead of clearing the graph and adding the whole model again.
+ *
+ * <p>{@link #startRDF()} reads the stored statements of the graph and keeps a 128 bit fingerprint
+ * of each. Statements of the new model with a stored fingerprint are unchanged and skipped, the
+ * others are held in memory until the end of the model. {@link #endRDF()} first removes the stored
+ * statements that are not part of the new model and then adds the new ones, both in batches, the
+ * additions by a {@link BatchLoader}. Importing an unchanged model therefore writes nothing, and
+ * the store does not hold the old and the new version of a changed graph side by side. If the
+ * stored graph is empty, there is nothing to remove and the statements are added in batches while
+ * they arrive. The memory used grows with the number of stored statements, about 40 bytes each,
+ * and with the number of statements to add.
+ *
+ * <p>Statements are matched by their fingerprint alone, the store is not asked whether a statement
+ * with a known fingerprint is really stored. If a new statement had the fingerprint of a different
+ * stored one, it would be taken as unchanged and not added, and the stored one would be kept. The
+ * probability of any such collision among n statements is about n^2/2^129, below 10^-20 for a
+ * billion statements.
+ *
+ * <p>The replacement is not atomic, readers may see a partly replaced graph. Blank nodes cannot be
+ * matched with the stored ones, so statements with blank nodes are always removed and added again.
+ */
+public class ContextReplacer extends AbstractRDFHandler {
+
+  private final RepositoryConnection connection;
+  private final Resource context;
+  private final Supplier<RepositoryConnection> writers;
+  private final BatchLoader additions;
+  private int batchStatements = BatchLoader.DEFAULT_BATCH_STATEMENTS;
+  private ConversionMetrics metrics;
+
+  /** Fingerprints of the stored statements without blank nodes */
+  private FingerprintSet stored;
+  /** Stored statements with blank nodes, they are removed in any case */
+  private List<Statement> storedWithBlankNodes;
+
+  /** Statements to add, held until the removals are committed */
+  private List<Statement> pendingAdditions;
+
+  private final long[] fingerprint = new long[2];
+  private long removedStatements = 0;
+
+  /**
+   * Creates a replacer that removes statements on further connections of the repository of the
+   * connection. For connections of a {@link RepositoryUtils} use {@link
+   * #ContextReplacer(RepositoryConnection, Resource, Supplier)}, so the repository stays cached.
+   *
+   * @param connection connection to the repository, it is neither opened nor closed by the
+   *     replacer and must not be in a transaction
+   * @param context the named graph to replace
+   */
+  public ContextReplacer(RepositoryConnection connection, Resource context) {
+    this(connection, context, connection.getRepository()::getConnection);
+  }
+
+  /**
+   * @param connection connection to the repository, it is neither opened nor closed by the
+   *     replacer and must not be in a transaction
+   * @param context the named graph to replace
+   * @param writers opens a second connection to the same repository for each batch of removed
+   *     statements, which is closed by the replacer, e.g. {@code () ->
+   *     repositoryUtils.getConnection(repositoryId)}
+   */
+  public ContextReplacer(
+      RepositoryConnection connection, Resource context, Supplier<RepositoryConnection> writers) {
+    if (context == null) {
+      throw new IllegalArgumentException("Replacing needs a named graph");
+    }
+    this.connection = connection;
+    this.context = context;
+    this.writers = writers;
+    this.additions = new BatchLoader(connection, context);
+  }
+
+  /**
+   * @param batchStatements maximum number of added or removed statements per transaction
+   */
+  public void setBatchStatements(int batchStatements) {
+    additions.setBatchStatements(batchStatements);
+    this.batchStatements = batchStatements;
+  }
+
+  /**
+   * @param progressListener receives the progress after every committed batch of added statements
+   *     or {@code null}
+   */
+  public void setProgressListener(BatchLoader.ProgressListener progressListener) {
+    additions.setProgressListener(progressListener);
+  }
+
+  /**
+   * @param metrics receives the durations of sending and committing the batches of added and
+   *     removed statements or {@code null}
+   */
+  public void setMetrics(ConversionMetrics metrics) {
+    additions.setMetrics(metrics);
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the number of statements added so far
+   */
+  public long getAddedStatements() {
+    return additions.getCommittedStatements();
+  }
+
+  /**
+   * @return the number of statements removed so far
+   */
+  public long getRemovedStatements() {
+    return removedStatements;
+  }
+
+  /**
+   * @return the number of stored statements which are part of the new model so far
+   */
+  public long getUnchangedStatements() {
+    return stored != null ? stored.seen() : 0;
+  }
+
+  @Override
+  public void startRDF() {
+    stored = new FingerprintSet(1024);
+    storedWithBlankNodes = new ArrayList<Statement>();
+    removedStatements = 0;
+    try (RepositoryResult<Statement> statements =
+        connection.getStatements(null, null, null, false, context)) {
+      for (Statement st : statements) {
+        if (hasBlankNode(st)) {
+          storedWithBlankNodes.add(st);
+        } else {
+          fingerprint(st, fingerprint);
+          stored.add(fingerprint);
+        }
+      }
+    }
+    // nothing to remove, so the statements can be added right away
+    boolean empty = stored.size() == 0 && storedWithBlankNodes.isEmpty();
+    pendingAdditions = empty ? null : new ArrayList<Statement>();
+  }
+
+  @Override
+  public void handleStatement(Statement st) {
+    if (hasBlankNode(st)) {
+      add(st);
+      return;
+    }
+    fingerprint(st, fingerprint);
+    if (!stored.markSeen(fingerprint)) {
+      add(st);
+    }
+  }
+
+  private void add(Statement st) {
+    if (pendingAdditions != null) {
+      pendingAdditions.add(st);
+    } else {
+      additions.handleStatement(st);
+    }
+  }
+
+  @Override
+  public void endRDF() {
+    List<Statement> batch = new ArrayList<Statement>(storedWithBlankNodes);
+    storedWithBlankNodes = null;
+    if (stored.seen() < stored.size()) {
+      try (RepositoryResult<Statement> statements =
+          connection.getStatements(null, null, null, false, context)) {
+        for (Statement st : statements) {
+          if (hasBlankNode(st)) {
+            continue;
+          }
+          fingerprint(st, fingerprint);
+          if (stored.isUnseen(fingerprint)) {
+            batch.add(st);
+            if (batch.size() >= batchStatements) {
+              removeBatch(batch);
+            }
+          }
+        }
+      }
+    }
+    removeBatch(batch);
+    if (pendingAdditions != null) {
+      for (Statement st : pendingAdditions) {
+        additions.handleStatement(st);
+      }
+      pendingAdditions = null;
+    }
+    additions.endRDF();
+  }
+
+  /**
+   * Removes statements in a transaction of their own. A second connection is used, since the
+   * statements of the graph are still read from the first one.
+   */
+  private void removeBatch(List<Statement> batch) throws RepositoryException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try (RepositoryConnection writer = writers.get()) {
+      try {
+        long start = System.nanoTime();
+        writer.begin();
+        writer.remove(batch, context);
+        long sent = System.nanoTime();
+        writer.commit();
+        if (metrics != null) {
+          metrics.recordPhase(ConversionMetrics.Phase.UPLOAD, sent - start);
+          metrics.recordPhase(ConversionMetrics.Phase.COMMIT, System.nanoTime() - sent);
+        }
+      } catch (RepositoryException e) {
+        if (writer.isActive()) {
+          writer.rollback();
+        }
+        throw new RepositoryException(
+            "Removing failed after "
+                + removedStatements
+                + " removed and "
+                + additions.getCommittedStatements()
+                + " added statements",
+            e);
+      }
+    }
+    removedStatements += batch.size();
+    batch.clear();
+  }
+
+  private static boolean hasBlankNode(Statement st) {
+    return st.getSubject() instanceof BNode || st.getObject() instanceof BNode;
+  }
+
+  /** Computes a 128 bit fingerprint of subject, predicate and object of a statement */
+  private static void fingerprint(Statement st, long[] result) {
+    long[] h = {0x84222325CBF29CE4L, 0x9E3779B97F4A7C15L};
+    mix(h, st.getSubject().stringValue());
+    mix(h, st.getPredicate().stringValue());
+    Value object = st.getObject();
+    if (object instanceof Literal) {
+      Literal literal = (Literal) object;
+      mix(h, literal.getLabel());
+      if (literal.getLanguage().isPresent()) {
+        mix(h, "@" + literal.getLanguage().get());
+      } else {
+        mix(h, literal.getDatatype().stringValue());
+      }
+    } else {
+      mix(h, object.stringValue());
+      // separates IRIs from literals with the same text
+      mix(h, "");
+    }
+    result[0] = finish(h[0]);
+    result[1] = finish(h[1]);
+  }
+
+  private static void mix(long[] h, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      h[0] = (h[0] ^ value.charAt(i)) * 0x100000001B3L;
+      h[1] = Long.rotateLeft((h[1] ^ value.charAt(i)) * 0xC2B2AE3D27D4EB4FL, 31);
+    }
+    h[0] = (h[0] ^ value.length()) * 0x100000001B3L;
+    h[1] = Long.rotateLeft((h[1] ^ value.length()) * 0xC2B2AE3D27D4EB4FL, 31);
+  }
+
+  private static long finish(long h) {
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return h ^ (h >>> 33);
+  }
+
+  /**
+   * Set of 128 bit fingerprints in primitive arrays of an open addressing hash table, about 40
+   * bytes per statement. Each fingerprint can be marked as seen.
+   */
+  private static class FingerprintSet {
+
+    private static final byte FREE = 0;
+    private static final byte STORED = 1;
+    private static final byte SEEN = 2;
+
+    private long[] high;
+    private long[] low;
+    private byte[] states;
+    private int mask;
+    private int size = 0;
+    private int seen = 0;
+
+    FingerprintSet(int expectedSize) {
+      allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int seen() {
+      return seen;
+    }
+
+    void add(long[] fingerprint) {
+      int slot = find(fingerprint);
+      if (states[slot] != FREE) {
+        return;
+      }
+      high[slot] = fingerprint[0];
+      low[slot] = fingerprint[1];
+      states[slot] = STORED;
+      size++;
+      if (size * 2 > states.length) {
+        rehash(states.length * 2);
+      }
+    }
+
+    /**
+     * @return whether the fingerprint is in the set
+     */
+    boolean markSeen(long[] fingerprint) {
+      int slot = find(fingerprint);
+      if (states[slot] == STORED) {
+        states[slot] = SEEN;
+        seen++;
+      }
+      return states[slot] != FREE;
+    }
+
+    boolean isUnseen(long[] fingerprint) {
+      return states[find(fingerprint)] == STORED;
+    }
+
+    /** Slot of the fingerprint or the free slot it would be added at */
+    private int find(long[] fingerprint) {
+      int slot = (int) fingerprint[0] & mask;
+      while (states[slot] != FREE
+          && (high[slot] != fingerprint[0] || low[slot] != fingerprint[1])) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void allocate(int capacity) {
+      high = new long[capacity];
+      low = new long[capacity];
+      states = new byte[capacity];
+      mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+      long[] oldHigh = high;
+      long[] oldLow = low;
+      byte[] oldStates = states;
+      allocate(capacity);
+      for (int i = 0; i < oldStates.length; i++) {
+        if (oldStates[i] != FREE) {
+          int slot = (int) oldHigh[i] & mask;
+          while (states[slot] != FREE) {
+            slot = (slot + 1) & mask;
+          }
+          high[slot] = oldHigh[i];
+          low[slot] = oldLow[i];
+          states[slot] = oldStates[i];
+        }
+      }
+    }
+  }
+}
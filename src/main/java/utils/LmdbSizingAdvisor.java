@@ -0,0 +1,175 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.rdf4j.sail.lmdb.config.LmdbStoreConfig;
+
+/**
+ * Estimates the map sizes of an LMDB store from the expected number of statements, so the store
+ * does not start with the small default maps and grow them repeatedly under load. The estimate
+ * and the index and cache settings depend on the {@link Profile} of the store.
+ *
+ * <p>The number of statements can be counted exactly by a dry run of the converter into a {@code
+ * converter.rdf2ifc.CountingStreamRDF} or estimated by {@link #estimateStatements(Path)} from the
+ * IFC file.
+ */
+public class LmdbSizingAdvisor {
+
+  /** Settings of a store for its main use */
+  public enum Profile {
+    /**
+     * Large imports: no forced sync, a large cache of value ids for the repeated values of the
+     * statements, the default indexes and twice the estimated size as headroom
+     */
+    BULK_INGEST("spoc,posc", false, 4096, 65536, 2.0),
+    /**
+     * Queries and partial updates: forced sync, a large value cache, an additional context index
+     * for named graph access and half the estimated size as headroom
+     */
+    QUERY_SERVING("spoc,posc,cspo", true, 65536, 8192, 1.5);
+
+    private final String tripleIndexes;
+    private final boolean forceSync;
+    private final int valueCacheSize;
+    private final int valueIDCacheSize;
+    private final double headroom;
+
+    Profile(
+        String tripleIndexes,
+        boolean forceSync,
+        int valueCacheSize,
+        int valueIDCacheSize,
+        double headroom) {
+      this.tripleIndexes = tripleIndexes;
+      this.forceSync = forceSync;
+      this.valueCacheSize = valueCacheSize;
+      this.valueIDCacheSize = valueIDCacheSize;
+      this.headroom = headroom;
+    }
+
+    /**
+     * @return the triple indexes, e.g. spoc,posc
+     */
+    public String getTripleIndexes() {
+      return tripleIndexes;
+    }
+
+    /**
+     * @return the number of triple indexes
+     */
+    public int getIndexCount() {
+      return tripleIndexes.split(",").length;
+    }
+  }
+
+  /**
+   * Bytes per statement and index: a key of four variable length ids and the B-tree overhead of
+   * half full pages
+   */
+  static final long TRIPLE_BYTES_PER_INDEX = 48;
+  /** Distinct values per statement, IFC models have few shared values apart from the classes */
+  static final double VALUES_PER_STATEMENT = 0.6;
+  /** Bytes per value: the value itself, its id and hash entries and the B-tree overhead */
+  static final long BYTES_PER_VALUE = 160;
+  /** Statements per attribute value of an IFC instance, e.g. the property, type and literal */
+  static final int STATEMENTS_PER_IFC_VALUE = 3;
+  /** Smallest map size, the default of the store */
+  static final long MIN_DB_SIZE = 10L << 20;
+
+  private final long expectedStatements;
+
+  /**
+   * @param expectedStatements number of statements the store shall hold
+   */
+  public LmdbSizingAdvisor(long expectedStatements) {
+    if (expectedStatements < 0) {
+      throw new IllegalArgumentException("Negative number of statements: " + expectedStatements);
+    }
+    this.expectedStatements = expectedStatements;
+  }
+
+  /**
+   * @return the number of statements the store shall hold
+   */
+  public long getExpectedStatements() {
+    return expectedStatements;
+  }
+
+  /**
+   * @param profile the use of the store
+   * @return the map size of the triple indexes in bytes
+   */
+  public long getTripleDBSize(Profile profile) {
+    return mapSize(expectedStatements * TRIPLE_BYTES_PER_INDEX * profile.getIndexCount(), profile);
+  }
+
+  /**
+   * @param profile the use of the store
+   * @return the map size of the values in bytes
+   */
+  public long getValueDBSize(Profile profile) {
+    return mapSize((long) (expectedStatements * VALUES_PER_STATEMENT) * BYTES_PER_VALUE, profile);
+  }
+
+  /**
+   * Creates the configuration of a store with the estimated map sizes and the settings of the
+   * profile. Auto grow stays enabled in case the estimate is too low.
+   *
+   * @param profile the use of the store
+   * @return the configuration
+   */
+  public LmdbStoreConfig createConfig(Profile profile) {
+    LmdbStoreConfig config = new LmdbStoreConfig(profile.getTripleIndexes());
+    config.setTripleDBSize(getTripleDBSize(profile));
+    config.setValueDBSize(getValueDBSize(profile));
+    config.setForceSync(profile.forceSync);
+    config.setValueCacheSize(profile.valueCacheSize);
+    config.setValueIDCacheSize(profile.valueIDCacheSize);
+    config.setAutoGrow(true);
+    return config;
+  }
+
+  /** Adds the headroom and rounds up to whole MiB, a multiple of the page size */
+  private static long mapSize(long estimate, Profile profile) {
+    long size = Math.max(MIN_DB_SIZE, (long) (estimate * profile.headroom));
+    return (size + (1L << 20) - 1) & -(1L << 20);
+  }
+
+  /**
+   * Estimates the number of statements of a converted IFC file by one pass over its bytes. Every
+   * instance gives its type statement and every set attribute value {@link
+   * #STATEMENTS_PER_IFC_VALUE} statements.
+   *
+   * @param ifcFile the IFC file
+   * @return the estimated number of statements
+   * @throws IOException if the file cannot be read
+   */
+  public static long estimateStatements(Path ifcFile) throws IOException {
+    long instances = 0;
+    long values = 0;
+    long unset = 0;
+    boolean inString = false;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(ifcFile), 1 << 16)) {
+      int b;
+      while ((b = in.read()) != -1) {
+        if (b == '\'') {
+          // an escaped quote toggles twice
+          inString = !inString;
+        } else if (inString) {
+          continue;
+        } else if (b == ';') {
+          instances++;
+          values++;
+        } else if (b == ',') {
+          values++;
+        } else if (b == '$' || b == '*') {
+          unset++;
+        }
+      }
+    }
+    return instances + Math.max(0, values - unset) * STATEMENTS_PER_IFC_VALUE;
+  }
+}
@@ -0,0 +1,213 @@
+package utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+/**
+ * Hands the statements to another {@link RDFHandler} on a thread of its own, so the producer, e.g.
+ * the converter, and the consumer, e.g. a {@link BatchLoader} that commits to a repository, run at
+ * the same time. The statements are passed in chunks through a bounded queue. If the queue is full,
+ * the producer waits until the consumer catches up, so the memory use is bounded by the capacity of
+ * the queue.
+ *
+ * <p>All methods of the consumer, including {@link RDFHandler#startRDF()} and {@link
+ * RDFHandler#endRDF()}, are called on the consumer thread in the order of the events. The first
+ * event starts the consumer thread and is preceded by {@link RDFHandler#startRDF()}, so namespaces
+ * declared before {@link #startRDF()} are passed on after it. A failure of the consumer is thrown
+ * to the producer at its next chunk or by {@link #endRDF()}. If the producer fails, {@link
+ * #close()} drops the queued events and stops the consumer without calling its {@link
+ * RDFHandler#endRDF()}.
+ */
+public class PipelinedRDFHandler extends AbstractRDFHandler implements AutoCloseable {
+
+  public static final int DEFAULT_CHUNK_SIZE = 4096;
+  public static final int DEFAULT_QUEUE_CHUNKS = 64;
+
+  /** Marks the end of the events, the consumer thread stops when it takes it */
+  private static final Consumer<RDFHandler> END = handler -> {};
+
+  private final RDFHandler consumer;
+  private final int chunkSize;
+  private final BlockingQueue<Consumer<RDFHandler>> queue;
+
+  private Statement[] chunk;
+  private int chunkLength = 0;
+  private Thread thread;
+  private boolean started = false;
+  private volatile Throwable failure;
+  /** Set by {@link #close()}, the consumer skips the events that are still queued */
+  private volatile boolean cancelled = false;
+
+  /**
+   * @param consumer receives the statements on the consumer thread
+   */
+  public PipelinedRDFHandler(RDFHandler consumer) {
+    this(consumer, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_CHUNKS);
+  }
+
+  /**
+   * @param consumer receives the statements on the consumer thread
+   * @param chunkSize number of statements passed to the consumer at once
+   * @param queueChunks number of chunks the producer may be ahead of the consumer
+   */
+  public PipelinedRDFHandler(RDFHandler consumer, int chunkSize, int queueChunks) {
+    if (chunkSize < 1 || queueChunks < 1) {
+      throw new IllegalArgumentException(
+          "Chunk size and queue must be at least 1: " + chunkSize + ", " + queueChunks);
+    }
+    this.consumer = consumer;
+    this.chunkSize = chunkSize;
+    this.queue = new ArrayBlockingQueue<Consumer<RDFHandler>>(queueChunks);
+  }
+
+  @Override
+  public void startRDF() {
+    if (started) {
+      throw new IllegalStateException("The pipeline has already been started");
+    }
+    started = true;
+    startThread();
+  }
+
+  /** Starts the consumer thread with the start of the consumer as its first event, if needed */
+  private void startThread() {
+    if (thread != null) {
+      return;
+    }
+    chunk = new Statement[chunkSize];
+    thread = new Thread(this::consume, "rdf-pipeline-consumer");
+    thread.setDaemon(true);
+    thread.start();
+    put(RDFHandler::startRDF);
+  }
+
+  @Override
+  public void handleNamespace(String prefix, String uri) {
+    startThread();
+    flush();
+    put(handler -> handler.handleNamespace(prefix, uri));
+  }
+
+  @Override
+  public void handleComment(String comment) {
+    startThread();
+    flush();
+    put(handler -> handler.handleComment(comment));
+  }
+
+  @Override
+  public void handleStatement(Statement st) {
+    if (thread == null) {
+      startThread();
+    }
+    chunk[chunkLength++] = st;
+    if (chunkLength == chunkSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Passes the remaining statements and the end to the consumer and waits until it has handled
+   * them.
+   *
+   * @throws RDFHandlerException if the consumer failed
+   */
+  @Override
+  public void endRDF() {
+    startThread();
+    flush();
+    put(RDFHandler::endRDF);
+    stop();
+    rethrowFailure();
+  }
+
+  /**
+   * Stops the consumer thread, if it still runs, e.g. after the producer failed. Statements not yet
+   * handled are dropped, the consumer stops after the one it is handling at the moment, and the
+   * {@link RDFHandler#endRDF()} of the consumer is not called.
+   */
+  @Override
+  public void close() {
+    if (thread != null && thread.isAlive()) {
+      cancelled = true;
+      chunkLength = 0;
+      queue.clear();
+      stop();
+    }
+  }
+
+  private void flush() {
+    if (chunkLength == 0) {
+      return;
+    }
+    Statement[] full = chunk;
+    int length = chunkLength;
+    chunk = new Statement[chunkSize];
+    chunkLength = 0;
+    put(
+        handler -> {
+          for (int i = 0; i < length && !cancelled; i++) {
+            handler.handleStatement(full[i]);
+          }
+        });
+    rethrowFailure();
+  }
+
+  private void put(Consumer<RDFHandler> event) {
+    try {
+      queue.put(event);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RDFHandlerException("Interrupted while waiting for the consumer", e);
+    }
+  }
+
+  /** Ends the events and waits for the consumer thread, which drains the queue after a failure */
+  private void stop() {
+    put(END);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RDFHandlerException("Interrupted while waiting for the consumer", e);
+    }
+  }
+
+  private void rethrowFailure() {
+    Throwable t = failure;
+    if (t == null) {
+      return;
+    }
+    if (thread.isAlive()) {
+      stop();
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new RDFHandlerException("The consumer failed", t);
+  }
+
+  private void consume() {
+    try {
+      for (Consumer<RDFHandler> event = queue.take(); event != END; event = queue.take()) {
+        if (failure == null && !cancelled) {
+          try {
+            event.accept(consumer);
+          } catch (Throwable t) {
+            // keep draining, so the producer does not block on a full queue
+            failure = t;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      failure = e;
+    }
+  }
+}
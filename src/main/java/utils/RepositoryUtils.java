@@ -1,18 +1,58 @@
 package utils;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.eclipse.rdf4j.common.transaction.IsolationLevel;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.base.RepositoryConnectionWrapper;
 import org.eclipse.rdf4j.repository.config.RepositoryConfig;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
 import org.eclipse.rdf4j.repository.manager.RepositoryManager;
 import org.eclipse.rdf4j.repository.manager.RepositoryProvider;
 import org.eclipse.rdf4j.repository.sail.config.SailRepositoryConfig;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
 import org.eclipse.rdf4j.sail.lmdb.config.LmdbStoreConfig;
 
-/** Utilities for repositories to be accessed over a RDF4J server */
+/**
+ * Utilities for repositories to be accessed over a RDF4J server or embedded in a local data
+ * directory. Embedded repositories are a {@code SailRepository} with an {@code LmdbStore} in the
+ * directory {@code repositories/<repositoryId>} of the data directory and are written in-process,
+ * without HTTP and the transaction limits of a server.
+ *
+ * <p>Initialized repositories are cached and shared by all connections of this instance. A cached
+ * repository is shut down, when it had no open connection for the idle timeout, see {@link
+ * #setIdleTimeout(long)}. The transactions of the connections are recorded as flight recorder
+ * events. This class is thread safe.
+ */
 public class RepositoryUtils {
+  /** Delay before the first retry of a failed batch */
+  public static final long RETRY_DELAY_MILLIS = 1000;
+  /** Time a repository without open connections stays initialized */
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
   private final RepositoryManager repositoryManager;
 
+  /** Initialized repositories by their id */
+  private final Map<String, CachedRepository> repositories =
+      new HashMap<String, CachedRepository>();
+
+  private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
   /** Generates a new {@link RepositoryUtils} and primes the connection to the RDF4J Server */
   public RepositoryUtils(String rdf4jServerURL) {
     // uses RepositoryProvider to utilize a builtin shutdown hook
@@ -21,15 +61,60 @@ public class RepositoryUtils {
   }
 
   /**
-   * Returns a {@link Repository}, if it exists
+   * Generates a new {@link RepositoryUtils} for repositories embedded in a local data directory
+   *
+   * @param dataDir the data directory, it is created if it does not exist
+   */
+  public RepositoryUtils(File dataDir) {
+    // uses RepositoryProvider to utilize a builtin shutdown hook
+    this.repositoryManager = RepositoryProvider.getRepositoryManager(dataDir);
+    this.repositoryManager.init();
+  }
+
+  /**
+   * Shuts down the repositories and releases the manager, e.g. to copy the data directory of
+   * embedded repositories. The instance cannot be used afterwards.
+   */
+  public synchronized void shutDown() {
+    repositories.clear();
+    this.repositoryManager.shutDown();
+  }
+
+  /**
+   * @param idleTimeoutMillis time a repository without open connections stays initialized, 0 shuts
+   *     it down when its last connection is closed
+   */
+  public synchronized void setIdleTimeout(long idleTimeoutMillis) {
+    if (idleTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Negative idle timeout: " + idleTimeoutMillis);
+    }
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    evictIdle();
+  }
+
+  /**
+   * Returns a {@link Repository}, if it exists. The repository is cached and shared, it must not be
+   * shut down by the caller. Since it is not known when the caller is done with it, it stays
+   * initialized until {@link #shutDown()}, the idle timeout does not apply to it anymore.
    *
    * @param repositoryId Id of repository
    * @return {@link Repository} or {@code null}, if it does not exist
    * @throws RepositoryConfigException If no {@link Repository} could be created due to invalid or
    *     incomplete configuration data.
    */
-  public Repository getRepository(String repositoryId) throws RepositoryConfigException {
-    return this.repositoryManager.getRepository(repositoryId);
+  public synchronized Repository getRepository(String repositoryId)
+      throws RepositoryConfigException {
+    CachedRepository cached = acquire(repositoryId);
+    if (cached == null) {
+      return null;
+    }
+    if (cached.pinned) {
+      cached.release();
+    } else {
+      // the reference is kept until the shut down
+      cached.pinned = true;
+    }
+    return cached.repository;
   }
 
   /**
@@ -40,56 +125,364 @@ public class RepositoryUtils {
    * @throws IllegalArgumentException If the given params are already a repo
    */
   public void createRepository(String repositoryId) throws IllegalArgumentException {
-    if (getRepository(repositoryId) != null) {
+    createRepository(repositoryId, new LmdbStoreConfig());
+  }
+
+  /**
+   * Creates a new repository with maps sized for the expected number of statements and the
+   * settings of the profile, see {@link LmdbSizingAdvisor}.
+   *
+   * @param repositoryId Id of repository
+   * @param expectedStatements number of statements the repository shall hold
+   * @param profile the use of the repository
+   * @throws IllegalArgumentException If the given params are already a repo
+   */
+  public void createRepository(
+      String repositoryId, long expectedStatements, LmdbSizingAdvisor.Profile profile)
+      throws IllegalArgumentException {
+    createRepository(repositoryId, new LmdbSizingAdvisor(expectedStatements).createConfig(profile));
+  }
+
+  /**
+   * Creates a new repository with the given store configuration.
+   *
+   * @param repositoryId Id of repository
+   * @param lmdbConfig configuration of the store
+   * @throws IllegalArgumentException If the given params are already a repo
+   */
+  public void createRepository(String repositoryId, LmdbStoreConfig lmdbConfig)
+      throws IllegalArgumentException {
+    if (exists(repositoryId)) {
       throw new IllegalArgumentException("Repository already exists.");
     }
 
     // add config repo database
     // the repo will be auto created if a config exist for it, and it's called the first time
-    LmdbStoreConfig lmdbConfig = new LmdbStoreConfig();
-
-    // set initial size of the database to fox issues
-    // final long initialDBSize = 3221225472L; // 3GB
-    // lmdbConfig.setTripleDBSize(initialDBSize);
-    // lmdbConfig.setValueDBSize(initialDBSize);
-
     SailRepositoryConfig sailConfig = new SailRepositoryConfig(lmdbConfig);
     RepositoryConfig repositoryConfig = new RepositoryConfig(repositoryId, sailConfig);
     this.repositoryManager.addRepositoryConfig(repositoryConfig);
   }
 
   /**
-   * Checks if a given repo exists
+   * Checks if a given repo exists by the list of repositories, without initializing it
    *
    * @param repositoryId Id of repository
    * @return {@code True} if the repo exists, otherwise {@code False}
-   * @throws RepositoryConfigException If no {@link Repository} could be created due to invalid or
-   *     incomplete configuration data.
+   * @throws RepositoryConfigException If the list of repositories cannot be read
    */
-  public boolean exists(String repositoryId) throws RepositoryConfigException {
-    Repository repo = getRepository(repositoryId);
-    if (repo != null) {
-      repo.shutDown(); // exist should not keep repo initialized
-      return true;
-    } else {
-      return false;
-    }
+  public synchronized boolean exists(String repositoryId) throws RepositoryConfigException {
+    return repositories.containsKey(repositoryId)
+        || this.repositoryManager.getRepositoryIDs().contains(repositoryId);
   }
 
   /**
-   * Generates a {@link RepositoryConnection} for a repository, with the given params
+   * Generates a {@link RepositoryConnection} for a repository, with the given params. The cached
+   * repository stays initialized at least until the connection is closed.
    *
    * @param repositoryId Id of repository
    * @return {@link RepositoryConnection} if it exists, otherwise {@code null}
    * @throws RepositoryConfigException If no {@link Repository} could be created due to invalid or
    *     incomplete configuration data.
    */
-  public RepositoryConnection getConnection(String repositoryId) throws RepositoryConfigException {
-    Repository repo = getRepository(repositoryId);
-    if (repo != null) {
-      return repo.getConnection();
-    } else {
+  public synchronized RepositoryConnection getConnection(String repositoryId)
+      throws RepositoryConfigException {
+    CachedRepository cached = acquire(repositoryId);
+    if (cached == null) {
       return null;
     }
+    try {
+      return new CachedConnection(repositoryId, cached);
+    } catch (RuntimeException e) {
+      cached.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Connection to a cached repository that releases its reference when it is closed. Each
+   * transaction is recorded as a {@link BatchCommitEvent} for the flight recorder.
+   */
+  private class CachedConnection extends RepositoryConnectionWrapper {
+
+    private final String repositoryId;
+    private final CachedRepository cached;
+    private boolean closed = false;
+    private BatchCommitEvent transaction;
+
+    CachedConnection(String repositoryId, CachedRepository cached) {
+      super(cached.repository, cached.repository.getConnection());
+      this.repositoryId = repositoryId;
+      this.cached = cached;
+    }
+
+    @Override
+    public void begin() {
+      super.begin();
+      beginTransaction();
+    }
+
+    @Override
+    public void begin(IsolationLevel level) {
+      super.begin(level);
+      beginTransaction();
+    }
+
+    @Override
+    public void add(Statement st, Resource... contexts) {
+      super.add(st, contexts);
+      countStatements(1);
+    }
+
+    @Override
+    public void add(Iterable<? extends Statement> statements, Resource... contexts) {
+      super.add(statements, contexts);
+      if (statements instanceof Collection) {
+        countStatements(((Collection<?>) statements).size());
+      }
+    }
+
+    @Override
+    public void remove(Statement st, Resource... contexts) {
+      super.remove(st, contexts);
+      countStatements(1);
+    }
+
+    @Override
+    public void remove(Iterable<? extends Statement> statements, Resource... contexts) {
+      super.remove(statements, contexts);
+      if (statements instanceof Collection) {
+        countStatements(((Collection<?>) statements).size());
+      }
+    }
+
+    @Override
+    public void commit() {
+      super.commit();
+      endTransaction(true);
+    }
+
+    @Override
+    public void rollback() {
+      try {
+        super.rollback();
+      } finally {
+        endTransaction(false);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        super.close();
+      } finally {
+        synchronized (RepositoryUtils.this) {
+          if (!closed) {
+            closed = true;
+            cached.release();
+            evictIdle();
+          }
+        }
+      }
+    }
+
+    private void beginTransaction() {
+      transaction = new BatchCommitEvent();
+      transaction.repositoryId = repositoryId;
+      transaction.begin();
+    }
+
+    private void countStatements(long count) {
+      if (transaction != null) {
+        transaction.statementCount += count;
+      }
+    }
+
+    private void endTransaction(boolean committed) {
+      if (transaction != null) {
+        transaction.committed = committed;
+        transaction.commit();
+        transaction = null;
+      }
+    }
+  }
+
+  /** Returns the cached repository with one more reference, after initializing it if needed */
+  private CachedRepository acquire(String repositoryId) {
+    CachedRepository cached = repositories.get(repositoryId);
+    if (cached == null) {
+      Repository repository = this.repositoryManager.getRepository(repositoryId);
+      if (repository == null) {
+        return null;
+      }
+      cached = new CachedRepository(repository);
+      repositories.put(repositoryId, cached);
+    }
+    cached.references++;
+    evictIdle();
+    return cached;
+  }
+
+  /** Shuts down the repositories that had no open connection for the idle timeout */
+  private void evictIdle() {
+    long now = System.currentTimeMillis();
+    Iterator<CachedRepository> iterator = repositories.values().iterator();
+    while (iterator.hasNext()) {
+      CachedRepository cached = iterator.next();
+      if (cached.references == 0 && now - cached.lastUsed >= idleTimeoutMillis) {
+        iterator.remove();
+        cached.repository.shutDown();
+      }
+    }
+  }
+
+  /**
+   * An initialized repository and the number of its open connections, plus one, if it was returned
+   * by {@link #getRepository(String)}
+   */
+  private static class CachedRepository {
+
+    private final Repository repository;
+    private int references = 0;
+    private boolean pinned = false;
+    private long lastUsed = System.currentTimeMillis();
+
+    CachedRepository(Repository repository) {
+      this.repository = repository;
+    }
+
+    void release() {
+      references--;
+      lastUsed = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Loads an RDF file into a repository in transactions of at most the given number of statements,
+   * see {@link BatchLoader}. If a batch fails, the committed batches are kept.
+   *
+   * @param repositoryId Id of repository
+   * @param file the RDF file
+   * @param format the syntax of the file
+   * @param batchStatements maximum number of statements per transaction
+   * @param contexts named graphs the statements are added to
+   * @return the number of loaded statements
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the repository does not exist
+   */
+  public long load(
+      String repositoryId, File file, RDFFormat format, int batchStatements, Resource... contexts)
+      throws IOException {
+    RepositoryConnection connection = getConnection(repositoryId);
+    if (connection == null) {
+      throw new IllegalArgumentException("Repository does not exist: " + repositoryId);
+    }
+    try (InputStream in = new FileInputStream(file)) {
+      BatchLoader loader = new BatchLoader(connection, contexts);
+      loader.setBatchStatements(batchStatements);
+      RDFParser parser = Rio.createParser(format);
+      parser.setRDFHandler(loader);
+      parser.parse(in, file.toURI().toString());
+      return loader.getCommittedStatements();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Replaces a named graph of a repository by the statements of an RDF file, sending only the
+   * difference to the stored graph, see {@link ContextReplacer}.
+   *
+   * @param repositoryId Id of repository
+   * @param file the RDF file
+   * @param format the syntax of the file
+   * @param batchStatements maximum number of statements per transaction
+   * @param context the named graph to replace
+   * @return the number of added and removed statements
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the repository does not exist
+   */
+  public long replace(
+      String repositoryId, File file, RDFFormat format, int batchStatements, Resource context)
+      throws IOException {
+    RepositoryConnection connection = getConnection(repositoryId);
+    if (connection == null) {
+      throw new IllegalArgumentException("Repository does not exist: " + repositoryId);
+    }
+    try (InputStream in = new FileInputStream(file)) {
+      ContextReplacer replacer =
+          new ContextReplacer(connection, context, () -> getConnection(repositoryId));
+      replacer.setBatchStatements(batchStatements);
+      RDFParser parser = Rio.createParser(format);
+      parser.setRDFHandler(replacer);
+      parser.parse(in, file.toURI().toString());
+      return replacer.getAddedStatements() + replacer.getRemovedStatements();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Loads an RDF file like {@link #load(String, File, RDFFormat, int, Resource...)}, but each batch
+   * is retried after a failure and the load can be resumed. After every committed batch the number
+   * of committed statements is written to the checkpoint file. If the file exists, the load skips
+   * the statements committed before and continues after them. The checkpoint is deleted, when the
+   * file is loaded completely.
+   *
+   * @param repositoryId Id of repository
+   * @param file the RDF file
+   * @param format the syntax of the file
+   * @param batchStatements maximum number of statements per transaction
+   * @param attempts how often a batch is sent, before the load fails
+   * @param checkpoint file of the committed statements
+   * @param contexts named graphs the statements are added to
+   * @return the number of loaded statements, including the ones of earlier attempts
+   * @throws IOException if the file or the checkpoint cannot be read or written
+   * @throws IllegalArgumentException if the repository does not exist
+   */
+  public long upload(
+      String repositoryId,
+      File file,
+      RDFFormat format,
+      int batchStatements,
+      int attempts,
+      File checkpoint,
+      Resource... contexts)
+      throws IOException {
+    RepositoryConnection connection = getConnection(repositoryId);
+    if (connection == null) {
+      throw new IllegalArgumentException("Repository does not exist: " + repositoryId);
+    }
+    Path checkpointPath = checkpoint.toPath();
+    try (InputStream in = new FileInputStream(file)) {
+      BatchLoader loader = new BatchLoader(connection, contexts);
+      loader.setBatchStatements(batchStatements);
+      loader.setRetries(attempts, RETRY_DELAY_MILLIS);
+      if (Files.exists(checkpointPath)) {
+        loader.resumeAfter(Long.parseLong(Files.readString(checkpointPath).trim()));
+      }
+      loader.setProgressListener(
+          (batches, statements) -> writeCheckpoint(checkpointPath, statements));
+      RDFParser parser = Rio.createParser(format);
+      parser.setRDFHandler(loader);
+      parser.parse(in, file.toURI().toString());
+      Files.deleteIfExists(checkpointPath);
+      return loader.getCommittedStatements();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /** Replaces the checkpoint atomically, so an interrupted write leaves the previous one */
+  private static void writeCheckpoint(Path checkpoint, long statements) {
+    try {
+      Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+      Files.writeString(temp, Long.toString(statements));
+      Files.move(
+          temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 }
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/** Checks the encoding of the attribute slots at the limits of their fields. */
+public class EntityInstanceTest {
+
+  private static final int MAX_30 = (1 << 30) - 1;
+
+  @Test
+  public void encodesSlicesOfAllKinds() {
+    for (int kind = EntityInstance.UNSET; kind <= EntityInstance.KEYWORD; kind++) {
+      EntityInstance instance = instance(EntityInstance.slice(kind, MAX_30, MAX_30));
+      assertEquals(kind, instance.getKind(0));
+      // lists and slices share the layout of offset and length
+      assertEquals(MAX_30, instance.getListStart(0));
+      assertEquals(MAX_30, instance.getListSize(0));
+    }
+  }
+
+  @Test
+  public void encodesLists() {
+    EntityInstance instance =
+        instance(EntityInstance.list(MAX_30, MAX_30), EntityInstance.list(1, 0));
+    assertEquals(EntityInstance.LIST, instance.getKind(0));
+    assertEquals(MAX_30, instance.getListStart(0));
+    assertEquals(MAX_30, instance.getListSize(0));
+    assertEquals(1, instance.getListStart(1));
+    assertEquals(0, instance.getListSize(1));
+  }
+
+  @Test
+  public void encodesReferences() {
+    long largest = EntityInstance.INVALID_REFERENCE - 1;
+    EntityInstance instance =
+        instance(EntityInstance.reference(largest), EntityInstance.reference(0));
+    assertEquals(EntityInstance.REFERENCE, instance.getKind(0));
+    assertEquals(largest, instance.getReference(0));
+    assertEquals(0, instance.getReference(1));
+    instance.setReference(1, 42);
+    assertEquals(EntityInstance.REFERENCE, instance.getKind(1));
+    assertEquals(42, instance.getReference(1));
+    assertEquals(largest, instance.getReference(0));
+  }
+
+  @Test
+  public void classifiesTokenizedValues() throws IOException {
+    EntityInstance instance =
+        parse("#1=IFCX($,*,#12,'a''b',.T.,-1.5E-3,\"0FF\",IFCLABEL('c'),(1,(#2)),#x);");
+    int[] kinds = {
+      EntityInstance.UNSET,
+      EntityInstance.DERIVED,
+      EntityInstance.REFERENCE,
+      EntityInstance.STRING,
+      EntityInstance.ENUMERATION,
+      EntityInstance.NUMBER,
+      EntityInstance.BINARY,
+      EntityInstance.KEYWORD,
+      EntityInstance.LIST,
+      EntityInstance.LIST,
+      EntityInstance.REFERENCE
+    };
+    int start = instance.getAttributeStart();
+    assertEquals(kinds.length, instance.getAttributeCount());
+    for (int i = 0; i < kinds.length; i++) {
+      assertEquals(kinds[i], instance.getKind(start + i), "kind of attribute " + i);
+    }
+    assertEquals(12, instance.getReference(start + 2));
+    assertEquals("'a''b'", instance.getToken(start + 3));
+    assertEquals("a''b", instance.getLiteral(start + 3));
+    assertEquals("0FF", instance.getLiteral(start + 6));
+    assertEquals("IFCLABEL", instance.getToken(start + 7));
+    assertEquals("('c')", instance.toString(start + 8));
+    assertEquals("(1,(#2))", instance.toString(start + 9));
+    assertEquals(EntityInstance.INVALID_REFERENCE, instance.getReference(start + 10));
+  }
+
+  private static EntityInstance instance(long... slots) {
+    return new EntityInstance(
+        1, "IFCX", new byte[0], slots, 0, slots.length, StandardCharsets.UTF_8);
+  }
+
+  static EntityInstance parse(String statement) throws IOException {
+    byte[] model = ("DATA;\n" + statement + "\n").getBytes(StandardCharsets.UTF_8);
+    try (StepTokenizer tokenizer = new StepTokenizer(new ByteArrayInputStream(model))) {
+      return tokenizer.next();
+    }
+  }
+}
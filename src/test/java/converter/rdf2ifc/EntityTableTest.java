@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Checks the {@link EntityTable} against a {@link LinkedHashMap}. */
+public class EntityTableTest {
+
+  @Test
+  public void keepsInsertionOrderWhenReplacing() {
+    EntityTable<String> table = new EntityTable<String>();
+    table.put(5, "a");
+    table.put(3, "b");
+    table.put(9, "c");
+    assertEquals("b", table.put(3, "B"));
+    assertEquals(Arrays.asList("a", "B", "c"), values(table));
+    assertEquals(3, table.size());
+    assertNull(table.get(4));
+    assertFalse(table.containsKey(4));
+  }
+
+  @Test
+  public void addsRemovedIdsAtTheEnd() {
+    EntityTable<String> table = new EntityTable<String>();
+    table.put(1, "a");
+    table.put(2, "b");
+    assertEquals("a", table.remove(1));
+    assertNull(table.remove(1));
+    table.put(1, "c");
+    assertEquals(Arrays.asList("b", "c"), values(table));
+  }
+
+  @Test
+  public void removesWhileIterating() {
+    EntityTable<Long> table = new EntityTable<Long>(16);
+    for (long id = 0; id < 100; id++) {
+      table.put(id, id);
+    }
+    List<Long> seen = new ArrayList<Long>();
+    for (Long id : table) {
+      seen.add(id);
+      if (id % 2 == 0) {
+        table.remove(id);
+      }
+    }
+    assertEquals(100, seen.size());
+    assertEquals(50, table.size());
+    for (long id = 0; id < 100; id++) {
+      assertEquals(id % 2 == 1, table.containsKey(id));
+    }
+  }
+
+  @Test
+  public void skipsEntriesRemovedAheadOfTheIterator() {
+    EntityTable<String> table = new EntityTable<String>();
+    table.put(1, "a");
+    table.put(2, "b");
+    table.put(3, "c");
+    Iterator<String> it = table.iterator();
+    assertEquals("a", it.next());
+    table.remove(3);
+    assertEquals("b", it.next());
+    assertFalse(it.hasNext());
+  }
+
+  /**
+   * Random puts and removes of a few ids in a table that starts small, so most ids share probe
+   * sequences and removals move entries back across the end of the hash slots.
+   */
+  @Test
+  public void matchesLinkedHashMap() {
+    Random random = new Random(42);
+    EntityTable<Long> table = new EntityTable<Long>(4);
+    Map<Long, Long> expected = new LinkedHashMap<Long, Long>();
+    for (int step = 0; step < 200_000; step++) {
+      long id = random.nextInt(96) * 1024L;
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(id), table.remove(id));
+      } else {
+        Long value = (long) step;
+        assertEquals(expected.put(id, value), table.put(id, value));
+      }
+      if (step % 1000 == 0) {
+        assertEquals(expected.size(), table.size());
+        assertEquals(new ArrayList<Long>(expected.values()), values(table));
+        for (long other = 0; other < 96; other++) {
+          assertEquals(expected.get(other * 1024), table.get(other * 1024));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void clearsAllEntries() {
+    EntityTable<String> table = new EntityTable<String>();
+    table.put(1, "a");
+    table.clear();
+    assertTrue(table.isEmpty());
+    assertFalse(table.iterator().hasNext());
+    table.put(1, "b");
+    assertEquals("b", table.get(1));
+  }
+
+  @Test
+  public void rejectsNullValues() {
+    EntityTable<String> table = new EntityTable<String>();
+    assertThrows(IllegalArgumentException.class, () -> table.put(1, null));
+  }
+
+  private static <V> List<V> values(EntityTable<V> table) {
+    List<V> values = new ArrayList<V>();
+    for (V value : table) {
+      values.add(value);
+    }
+    return values;
+  }
+}
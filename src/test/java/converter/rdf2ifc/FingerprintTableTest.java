@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static converter.rdf2ifc.EntityInstanceTest.parse;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/** Checks the detection of duplicates by fingerprint and content. */
+public class FingerprintTableTest {
+
+  @Test
+  public void ignoresBlanksAndExpressIds() throws IOException {
+    EntityInstance first = parse("#1=IFCX('a b',(1.,#2),IFCLABEL('c'));");
+    EntityInstance second = parse("#7= IFCX ( 'a b' ,\n ( 1. , #2 ) , IFCLABEL ( 'c' ) ) ;");
+    assertArrayEquals(fingerprint(first), fingerprint(second));
+    assertTrue(first.hasSameContent(second));
+
+    FingerprintTable table = new FingerprintTable(16);
+    assertNull(table.putIfAbsent(fingerprint(first), first));
+    assertSame(first, table.putIfAbsent(fingerprint(second), second));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void distinguishesContent() throws IOException {
+    String[] statements = {
+      "#1=IFCX('a',(1.,2.));",
+      "#1=IFCY('a',(1.,2.));",
+      "#1=IFCX('b',(1.,2.));",
+      "#1=IFCX('a',(1.,3.));",
+      "#1=IFCX('a',(1.,2.),$);",
+      "#1=IFCX('a',((1.,2.)));",
+      "#1=IFCX(.A.,(1.,2.));",
+      "#1=IFCX('a',(1.,#2));",
+      "#1=IFCX('a',(1.,#3));"
+    };
+    FingerprintTable table = new FingerprintTable(4);
+    for (int i = 0; i < statements.length; i++) {
+      EntityInstance instance = parse(statements[i]);
+      for (int j = 0; j < i; j++) {
+        EntityInstance other = parse(statements[j]);
+        assertFalse(instance.hasSameContent(other), statements[i] + " " + statements[j]);
+        assertFalse(Arrays.equals(fingerprint(instance), fingerprint(other)));
+      }
+      assertNull(table.putIfAbsent(fingerprint(instance), instance));
+    }
+    assertEquals(statements.length, table.size());
+  }
+
+  /** Different instances with the same fingerprint are both kept, so both are merged later. */
+  @Test
+  public void keepsCollidingInstances() throws IOException {
+    long[] collision = {42, 42};
+    EntityInstance first = parse("#1=IFCX('a');");
+    EntityInstance second = parse("#2=IFCX('b');");
+    FingerprintTable table = new FingerprintTable(16);
+    assertNull(table.putIfAbsent(collision, first));
+    assertNull(table.putIfAbsent(collision, second));
+    assertSame(first, table.putIfAbsent(collision, parse("#3=IFCX('a');")));
+    assertSame(second, table.putIfAbsent(collision, parse("#4=IFCX('b');")));
+    assertEquals(2, table.size());
+  }
+
+  @Test
+  public void growsWithoutLosingInstances() throws IOException {
+    FingerprintTable table = new FingerprintTable(1);
+    EntityInstance[] instances = new EntityInstance[5000];
+    for (int i = 0; i < instances.length; i++) {
+      instances[i] = parse("#" + i + "=IFCX(" + i + ");");
+      // fingerprints that share their low bits collide in the hash slots
+      assertNull(table.putIfAbsent(new long[] {(long) i << 32, i}, instances[i]));
+    }
+    for (int i = 0; i < instances.length; i++) {
+      EntityInstance duplicate = parse("#" + (i + instances.length) + "=IFCX(" + i + ");");
+      assertSame(instances[i], table.putIfAbsent(new long[] {(long) i << 32, i}, duplicate));
+    }
+    assertEquals(instances.length, table.size());
+  }
+
+  private static long[] fingerprint(EntityInstance instance) {
+    long[] fingerprint = new long[2];
+    instance.fingerprint(fingerprint);
+    return fingerprint;
+  }
+}
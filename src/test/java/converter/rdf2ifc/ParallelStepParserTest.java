@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Parses {@code IFC/BasicWall.ifc} split into small chunks and compares it with the tokenizer. */
+public class ParallelStepParserTest {
+
+  @Test
+  public void parsesBasicWallLikeTheLineParser() throws IOException {
+    ByteBuffer model = ByteBuffer.wrap(Files.readAllBytes(StepTokenizerTest.BASIC_WALL));
+    // about 20 chunks of the 10 kB model on 4 threads
+    ParallelStepParser parser = new ParallelStepParser(4, StandardCharsets.UTF_8, 512);
+    Thread caller = Thread.currentThread();
+    List<String> instances = new ArrayList<String>();
+    parser.parse(
+        model,
+        instance -> {
+          assertSame(caller, Thread.currentThread());
+          instances.add(StepTokenizerTest.render(instance));
+        });
+    assertEquals(StepTokenizerTest.readGolden("BasicWall.entities.txt"), instances);
+    assertEquals(0, model.position());
+  }
+
+  @Test
+  public void splitsOnlyAtStatementEnds() throws IOException {
+    String text =
+        "DATA;\n#1=IFCA('a;b');\n/* #2=IFCB(); */\n#3=IFCC('it'';s',(1.,2.));\n#4=IFCD($);\n";
+    ByteBuffer model = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    // as many chunks as bytes, so every statement end is a bound
+    int[] bounds = ParallelStepParser.split(model, text.length());
+    int[] expected = {
+      0,
+      text.indexOf("DATA;") + 5,
+      text.indexOf("'a;b');") + 7,
+      text.indexOf("2.));") + 5,
+      text.indexOf("$);") + 3,
+      text.length()
+    };
+    assertEquals(Arrays.toString(expected), Arrays.toString(bounds));
+  }
+
+  @Test
+  public void splitsIntoChunksOfAboutTheSameSize() throws IOException {
+    ByteBuffer model = ByteBuffer.wrap(Files.readAllBytes(StepTokenizerTest.BASIC_WALL));
+    int[] bounds = ParallelStepParser.split(model, 8);
+    assertEquals(9, bounds.length);
+    assertEquals(0, bounds[0]);
+    assertEquals(model.limit(), bounds[8]);
+    for (int i = 1; i < bounds.length - 1; i++) {
+      assertTrue(bounds[i] > bounds[i - 1]);
+      assertEquals(';', model.get(bounds[i] - 1));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.junit.jupiter.api.Test;
+
+/** Checks that RDF4J handlers receive the events of a conversion in the order of their contract. */
+public class RDFHandlerStreamRDFTest {
+
+  @Test
+  public void holdsPrefixesUntilTheStart() {
+    Events events = new Events();
+    RDFHandlerStreamRDF sink = new RDFHandlerStreamRDF(events);
+    sink.prefix("a", "http://example.org/a#");
+    sink.prefix("b", "http://example.org/b#");
+    sink.start();
+    sink.prefix("c", "http://example.org/c#");
+    sink.finish();
+    assertEquals(List.of("startRDF", "a", "b", "c", "endRDF"), events.events);
+  }
+
+  @Test
+  public void writesBinaryRdfThatRioParses() throws Exception {
+    IFC2RDFConverter converter = new IFC2RDFConverter();
+    converter.setOutputFormat(OutputFormat.BINARY);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    converter.convert(
+        ByteBuffer.wrap(Files.readAllBytes(StepTokenizerTest.BASIC_WALL)),
+        out,
+        null,
+        null,
+        RDFWriterTest.BASE_URI,
+        false,
+        false,
+        false);
+
+    Events events = new Events();
+    RDFParser parser = Rio.createParser(RDFFormat.BINARY);
+    parser.setRDFHandler(events);
+    parser.parse(new ByteArrayInputStream(out.toByteArray()), RDFWriterTest.BASE_URI);
+    assertEquals("startRDF", events.events.get(0));
+    assertTrue(events.events.contains("ifcowl"));
+    assertEquals("endRDF", events.events.get(events.events.size() - 1));
+    assertEquals(RDFWriterTest.convert(writer -> {}).size(), events.statements);
+  }
+
+  /** Records the events in their order, statements are only counted */
+  private static class Events extends AbstractRDFHandler {
+
+    final List<String> events = new ArrayList<String>();
+    long statements = 0;
+
+    @Override
+    public void startRDF() {
+      events.add("startRDF");
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) {
+      events.add(prefix);
+    }
+
+    @Override
+    public void handleStatement(Statement st) {
+      statements++;
+    }
+
+    @Override
+    public void endRDF() {
+      events.add("endRDF");
+    }
+  }
+}
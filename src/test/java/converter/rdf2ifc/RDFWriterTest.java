@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Converts {@code IFC/BasicWall.ifc} in the other modes of the converter and compares the triples
+ * with the ones of the sequential conversion.
+ *
+ * <p>The modes share equal values of literal lists and defined types within different scopes, so
+ * the generated resources that hold the values differ in number and name. The triples are
+ * therefore compared with each generated resource replaced by a description of its content, see
+ * {@link #describe(List)}.
+ */
+public class RDFWriterTest {
+
+  static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+  @Test
+  public void streamsLikeTheSequentialConversion() throws Exception {
+    List<Triple> sequential = convert(writer -> {});
+    List<Triple> streamed = convert(writer -> writer.setBoundedMemory(true));
+    assertEquals(describe(sequential), describe(streamed));
+    // values are shared within an instance only
+    assertTrue(streamed.size() >= sequential.size());
+  }
+
+  @Test
+  public void emitsOneChunkLikeTheSequentialConversion() throws Exception {
+    // BasicWall fits into one chunk, so no value is shared differently
+    assertEquals(convert(writer -> {}), convert(writer -> writer.setEmitParallelism(4)));
+  }
+
+  @Test
+  public void emitsChunksInOrder() throws Exception {
+    for (boolean merge : new boolean[] {false, true}) {
+      List<Triple> sequential = convert(writer -> writer.setRemoveDuplicates(merge));
+      List<Triple> parallel =
+          convert(
+              writer -> {
+                writer.setRemoveDuplicates(merge);
+                writer.setEmitParallelism(4);
+                writer.setEmitChunkSize(16);
+              });
+      assertEquals(describe(sequential), describe(parallel));
+      assertEquals(instanceTriples(sequential), instanceTriples(parallel));
+    }
+  }
+
+  /**
+   * @param options sets the mode of the conversion
+   * @return the triples of the conversion of BasicWall in the order of the output
+   */
+  static List<Triple> convert(Consumer<RDFWriter> options) throws Exception {
+    ByteBuffer model = ByteBuffer.wrap(Files.readAllBytes(StepTokenizerTest.BASIC_WALL));
+    Header header = HeaderParser.parseHeader(model.duplicate());
+    IfcVersion.initDefaultIfcNsMap();
+    IfcVersion version = IfcVersion.getIfcVersion(header);
+    RDFWriter writer =
+        new RDFWriter(
+            SchemaRegistry.getSchema(version), model, BASE_URI, IfcVersion.IfcNSMap.get(version));
+    options.accept(writer);
+    TripleList triples = new TripleList();
+    writer.parseModel2Stream(triples, header);
+    return triples.triples;
+  }
+
+  /**
+   * Describes the triples of all resources except the generated ones in sorted order. A generated
+   * resource in the object of a triple is replaced by the sorted predicates and objects of its own
+   * triples, recursively, so equal values have the same description wherever they are shared.
+   */
+  static List<String> describe(List<Triple> triples) throws IOException {
+    Set<String> instances = instanceNames();
+    Map<Node, List<Triple>> bySubject = new HashMap<Node, List<Triple>>();
+    for (Triple t : triples) {
+      bySubject.computeIfAbsent(t.getSubject(), s -> new ArrayList<Triple>()).add(t);
+    }
+    List<String> descriptions = new ArrayList<String>();
+    for (Triple t : triples) {
+      if (!isGenerated(t.getSubject(), instances)) {
+        descriptions.add(
+            describe(t.getSubject(), bySubject, instances)
+                + " "
+                + describe(t.getPredicate(), bySubject, instances)
+                + " "
+                + describe(t.getObject(), bySubject, instances));
+      }
+    }
+    Collections.sort(descriptions);
+    return descriptions;
+  }
+
+  /** The triples between instances and the model in the order of the output */
+  private static List<Triple> instanceTriples(List<Triple> triples) throws IOException {
+    Set<String> instances = instanceNames();
+    List<Triple> result = new ArrayList<Triple>();
+    for (Triple t : triples) {
+      if (!isGenerated(t.getSubject(), instances) && !isGenerated(t.getObject(), instances)) {
+        result.add(t);
+      }
+    }
+    return result;
+  }
+
+  /** The names of the resources of the instances in upper case, e.g. IFCWALL_226 */
+  private static Set<String> instanceNames() throws IOException {
+    Set<String> instances = new HashSet<String>();
+    try (StepTokenizer tokenizer =
+        new StepTokenizer(Files.newInputStream(StepTokenizerTest.BASIC_WALL))) {
+      EntityInstance instance;
+      while ((instance = tokenizer.nextWithoutAttributes()) != null) {
+        instances.add(instance.getName() + "_" + instance.getLineNum());
+      }
+    }
+    return instances;
+  }
+
+  private static String describe(
+      Node node, Map<Node, List<Triple>> bySubject, Set<String> instances) {
+    if (node.isLiteral()) {
+      return '"'
+          + node.getLiteralLexicalForm()
+          + "\"^^"
+          + node.getLiteralDatatypeURI()
+          + "@"
+          + node.getLiteralLanguage();
+    }
+    if (!isGenerated(node, instances)) {
+      return "<" + node.getURI() + ">";
+    }
+    List<String> content = new ArrayList<String>();
+    for (Triple t : bySubject.getOrDefault(node, Collections.<Triple>emptyList())) {
+      content.add(
+          describe(t.getPredicate(), bySubject, instances)
+              + " "
+              + describe(t.getObject(), bySubject, instances));
+    }
+    Collections.sort(content);
+    return content.toString();
+  }
+
+  /** Whether the node is a resource of a value, as opposed to one of an instance or the model */
+  private static boolean isGenerated(Node node, Set<String> instances) {
+    if (node.isBlank()) {
+      return true;
+    }
+    if (!node.isURI()
+        || !node.getURI().startsWith(BASE_URI)
+        || node.getURI().length() == BASE_URI.length()) {
+      return false;
+    }
+    return !instances.contains(
+        node.getURI().substring(BASE_URI.length()).toUpperCase(Locale.ROOT));
+  }
+
+  /** Collects the triples of a conversion */
+  static class TripleList implements StreamRDF {
+
+    final List<Triple> triples = new ArrayList<Triple>();
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void triple(Triple triple) {
+      triples.add(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+      triples.add(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {}
+
+    @Override
+    public void prefix(String prefix, String iri) {}
+
+    @Override
+    public void finish() {}
+  }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package converter.rdf2ifc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the instances of the tokenizer with the ones of the line based parser it replaced. The
+ * golden file {@code BasicWall.entities.txt} holds the object lists of that parser for {@code
+ * IFC/BasicWall.ifc}, one instance per line with the values written back in STEP notation.
+ */
+public class StepTokenizerTest {
+
+  static final Path BASIC_WALL = Path.of("IFC", "BasicWall.ifc");
+
+  @Test
+  public void readsBasicWallLikeTheLineParser() throws IOException {
+    List<String> expected = readGolden("BasicWall.entities.txt");
+    try (StepTokenizer tokenizer = new StepTokenizer(Files.newInputStream(BASIC_WALL))) {
+      assertEquals(expected, render(tokenizer));
+    }
+  }
+
+  @Test
+  public void readsBuffersLikeStreams() throws IOException {
+    byte[] model = Files.readAllBytes(BASIC_WALL);
+    try (StepTokenizer stream = new StepTokenizer(new ByteArrayInputStream(model));
+        StepTokenizer buffer =
+            new StepTokenizer(ByteBuffer.wrap(model), StandardCharsets.UTF_8)) {
+      assertEquals(render(stream), render(buffer));
+    }
+  }
+
+  @Test
+  public void joinsLinesAndSkipsComments() throws IOException {
+    String model =
+        "ISO-10303-21;\nDATA;\n"
+            + "#7= IFCPROPERTY('abc   \n     def\t\r\n  ghi',\n  (1.,\n 2.),IFCLABEL('x'));\n"
+            + "/* #8=IFCNOT('a'); */\n"
+            + "#9=IFCX((IFCLABEL('a'),IFCREAL(2.)),'it''s');\n"
+            + "ENDSEC;\n";
+    try (StepTokenizer tokenizer = new StepTokenizer(stream(model))) {
+      assertEquals(
+          Arrays.asList(
+              "#7=IFCPROPERTY('abcdefghi',(1.,2.),IFCLABEL('x'))",
+              "#9=IFCX((IFCLABEL('a'),IFCREAL(2.)),'it''s')"),
+          render(tokenizer));
+    }
+  }
+
+  @Test
+  public void reportsStatementOffsets() throws IOException {
+    String model = "DATA;\n#1=IFCA($);\n  #2=IFCB(#1);\n";
+    try (StepTokenizer tokenizer = new StepTokenizer(stream(model))) {
+      assertEquals(-1, tokenizer.getOffset());
+      assertEquals(1, tokenizer.nextWithoutAttributes().getLineNum());
+      assertEquals(model.indexOf("#1"), tokenizer.getOffset());
+      EntityInstance instance = tokenizer.next();
+      assertEquals("IFCB", instance.getName());
+      assertEquals(model.indexOf("#2"), tokenizer.getOffset());
+      assertNull(tokenizer.next());
+    }
+  }
+
+  static List<String> readGolden(String name) throws IOException {
+    try (InputStream in = StepTokenizerTest.class.getResourceAsStream(name)) {
+      String golden = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      return Arrays.asList(golden.split("\n"));
+    }
+  }
+
+  static List<String> render(StepTokenizer tokenizer) throws IOException {
+    List<String> instances = new ArrayList<String>();
+    EntityInstance instance;
+    while ((instance = tokenizer.next()) != null) {
+      instances.add(render(instance));
+    }
+    return instances;
+  }
+
+  /**
+   * Writes the values like the object list of the line parser, where the keyword of a typed value
+   * and its parameter list were separate values without a comma between them.
+   */
+  static String render(EntityInstance instance) {
+    StringBuilder sb = new StringBuilder();
+    sb.append('#').append(instance.getLineNum()).append('=').append(instance.getName());
+    sb.append('(');
+    appendValues(sb, instance, instance.getAttributeStart(), instance.getAttributeCount());
+    return sb.append(')').toString();
+  }
+
+  private static void appendValues(
+      StringBuilder sb, EntityInstance instance, int start, int count) {
+    for (int slot = start; slot < start + count; slot++) {
+      switch (instance.getKind(slot)) {
+        case EntityInstance.REFERENCE:
+          sb.append('#').append(instance.getReference(slot));
+          break;
+        case EntityInstance.LIST:
+          sb.append('(');
+          appendValues(sb, instance, instance.getListStart(slot), instance.getListSize(slot));
+          sb.append(')');
+          break;
+        default:
+          sb.append(instance.getToken(slot));
+      }
+      if (instance.getKind(slot) != EntityInstance.KEYWORD && slot < start + count - 1) {
+        sb.append(',');
+      }
+    }
+  }
+
+  private static InputStream stream(String model) {
+    return new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8));
+  }
+}
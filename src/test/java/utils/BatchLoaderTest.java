@@ -0,0 +1,202 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.base.RepositoryConnectionWrapper;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Loads statements into a memory store in batches, with failing commits. */
+public class BatchLoaderTest {
+
+  static final ValueFactory VF = SimpleValueFactory.getInstance();
+  static final IRI GRAPH = VF.createIRI("http://example.org/graph");
+  private static final IRI OTHER_GRAPH = VF.createIRI("http://example.org/other");
+
+  private Repository repository;
+  private RepositoryConnection connection;
+
+  @BeforeEach
+  public void setUp() {
+    repository = new SailRepository(new MemoryStore());
+    repository.init();
+    connection = repository.getConnection();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    connection.close();
+    repository.shutDown();
+  }
+
+  @Test
+  public void commitsBatchesOfBoundedSize() {
+    BatchLoader loader = new BatchLoader(connection, GRAPH);
+    loader.setBatchStatements(10);
+    List<String> progress = new ArrayList<String>();
+    loader.setProgressListener((batches, statements) -> progress.add(batches + ":" + statements));
+    load(loader, statements(0, 25));
+    assertEquals(List.of("1:10", "2:20", "3:25"), progress);
+    assertEquals(3, loader.getCommittedBatches());
+    assertEquals(25, loader.getCommittedStatements());
+    assertEquals(25, connection.size(GRAPH));
+  }
+
+  @Test
+  public void commitsBatchesOfBoundedBytes() {
+    BatchLoader loader = new BatchLoader(connection, GRAPH);
+    // every statement is larger than a byte, so each is a batch of its own
+    loader.setBatchBytes(1);
+    load(loader, statements(0, 5));
+    assertEquals(5, loader.getCommittedBatches());
+    assertEquals(5, connection.size(GRAPH));
+  }
+
+  @Test
+  public void rejectsInvalidSizes() {
+    BatchLoader loader = new BatchLoader(connection, GRAPH);
+    assertThrows(IllegalArgumentException.class, () -> loader.setBatchStatements(0));
+    assertThrows(IllegalArgumentException.class, () -> loader.setBatchBytes(0));
+  }
+
+  @Test
+  public void retriesFailedBatches() {
+    FailingConnection failing = new FailingConnection(repository, connection, 2, 2);
+    BatchLoader loader = new BatchLoader(failing, GRAPH);
+    loader.setBatchStatements(10);
+    loader.setRetries(3, 0);
+    load(loader, statements(0, 25));
+    assertEquals(3, loader.getCommittedBatches());
+    assertEquals(25, connection.size(GRAPH));
+    assertFalse(connection.isActive());
+  }
+
+  @Test
+  public void keepsTheFailedBatchForAnotherCommit() {
+    FailingConnection failing = new FailingConnection(repository, connection, 2, 2);
+    BatchLoader loader = new BatchLoader(failing, GRAPH);
+    loader.setBatchStatements(10);
+    loader.setRetries(2, 0);
+    assertThrows(RepositoryException.class, () -> load(loader, statements(0, 25)));
+    assertEquals(1, loader.getCommittedBatches());
+    assertEquals(10, loader.getCommittedStatements());
+    assertEquals(10, connection.size(GRAPH));
+    // the third attempt succeeds
+    loader.commitBatch();
+    assertEquals(20, loader.getCommittedStatements());
+    assertEquals(20, connection.size(GRAPH));
+  }
+
+  @Test
+  public void resumesAfterTheCommittedStatements() {
+    FailingConnection failing =
+        new FailingConnection(repository, connection, 3, Integer.MAX_VALUE);
+    BatchLoader interrupted = new BatchLoader(failing, GRAPH);
+    interrupted.setBatchStatements(10);
+    assertThrows(RepositoryException.class, () -> load(interrupted, statements(0, 45)));
+    assertEquals(20, interrupted.getCommittedStatements());
+
+    BatchLoader resumed = new BatchLoader(connection, GRAPH);
+    resumed.setBatchStatements(10);
+    List<String> progress = new ArrayList<String>();
+    resumed.setProgressListener((batches, statements) -> progress.add(batches + ":" + statements));
+    resumed.resumeAfter(interrupted.getCommittedStatements());
+    load(resumed, statements(0, 45));
+    assertEquals(List.of("1:30", "2:40", "3:45"), progress);
+    assertEquals(45, connection.size(GRAPH));
+  }
+
+  @Test
+  public void resumesACompleteLoadWithoutWriting() {
+    FailingConnection failing =
+        new FailingConnection(repository, connection, 1, Integer.MAX_VALUE);
+    BatchLoader loader = new BatchLoader(failing, GRAPH);
+    loader.resumeAfter(25);
+    load(loader, statements(0, 25));
+    assertEquals(0, loader.getCommittedBatches());
+    assertEquals(25, loader.getCommittedStatements());
+  }
+
+  @Test
+  public void clearsTheContextsOnFailure() {
+    connection.add(statements(0, 5), OTHER_GRAPH);
+    FailingConnection failing = new FailingConnection(repository, connection, 2, 1);
+    BatchLoader loader = new BatchLoader(failing, GRAPH);
+    loader.setBatchStatements(10);
+    loader.setFailurePolicy(BatchLoader.FailurePolicy.CLEAR_CONTEXTS);
+    assertThrows(RepositoryException.class, () -> load(loader, statements(0, 25)));
+    assertEquals(0, loader.getCommittedStatements());
+    assertEquals(0, connection.size(GRAPH));
+    assertEquals(5, connection.size(OTHER_GRAPH));
+  }
+
+  @Test
+  public void clearsOnlyNamedGraphs() {
+    BatchLoader loader = new BatchLoader(connection);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> loader.setFailurePolicy(BatchLoader.FailurePolicy.CLEAR_CONTEXTS));
+  }
+
+  /**
+   * @return statements with subjects numbered from start to end, exclusive
+   */
+  static List<Statement> statements(int start, int end) {
+    List<Statement> statements = new ArrayList<Statement>();
+    for (int i = start; i < end; i++) {
+      statements.add(
+          VF.createStatement(
+              VF.createIRI("http://example.org/s" + i),
+              VF.createIRI("http://example.org/p"),
+              VF.createLiteral("value " + i)));
+    }
+    return statements;
+  }
+
+  static void load(BatchLoader loader, List<Statement> statements) {
+    loader.startRDF();
+    for (Statement st : statements) {
+      loader.handleStatement(st);
+    }
+    loader.endRDF();
+  }
+
+  /** Fails a number of commits, starting with the given one, e.g. a lost server response */
+  private static class FailingConnection extends RepositoryConnectionWrapper {
+
+    private final int firstFailure;
+    private int failures;
+    private int commits = 0;
+
+    FailingConnection(
+        Repository repository, RepositoryConnection delegate, int firstFailure, int failures) {
+      super(repository, delegate);
+      this.firstFailure = firstFailure;
+      this.failures = failures;
+    }
+
+    @Override
+    public void commit() {
+      commits++;
+      if (commits >= firstFailure && failures > 0) {
+        failures--;
+        throw new RepositoryException("Commit " + commits + " failed");
+      }
+      super.commit();
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static utils.BatchLoaderTest.GRAPH;
+import static utils.BatchLoaderTest.VF;
+import static utils.BatchLoaderTest.statements;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.base.RepositoryConnectionWrapper;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Replaces a named graph of a memory store by another model. */
+public class ContextReplacerTest {
+
+  private static final IRI OTHER_GRAPH = VF.createIRI("http://example.org/other");
+
+  private Repository repository;
+  private RepositoryConnection connection;
+  /** The commits of the recorded connections in their order */
+  private final List<String> commits = new ArrayList<String>();
+
+  @BeforeEach
+  public void setUp() {
+    repository = new SailRepository(new MemoryStore());
+    repository.init();
+    connection = repository.getConnection();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    connection.close();
+    repository.shutDown();
+  }
+
+  @Test
+  public void addsToAnEmptyGraph() {
+    ContextReplacer replacer = new ContextReplacer(connection, GRAPH);
+    replace(replacer, statements(0, 5));
+    assertEquals(5, replacer.getAddedStatements());
+    assertEquals(0, replacer.getRemovedStatements());
+    assertEquals(5, connection.size(GRAPH));
+  }
+
+  @Test
+  public void replacesTheDifference() {
+    connection.add(statements(0, 20), GRAPH);
+    connection.add(statements(0, 5), OTHER_GRAPH);
+    ContextReplacer replacer = new ContextReplacer(connection, GRAPH);
+    replacer.setBatchStatements(4);
+    replace(replacer, statements(10, 30));
+    assertEquals(10, replacer.getAddedStatements());
+    assertEquals(10, replacer.getRemovedStatements());
+    assertEquals(10, replacer.getUnchangedStatements());
+    assertEquals(20, connection.size(GRAPH));
+    for (Statement st : statements(10, 30)) {
+      assertTrue(connection.hasStatement(st, false, GRAPH));
+    }
+    assertEquals(5, connection.size(OTHER_GRAPH));
+  }
+
+  @Test
+  public void writesNothingForAnUnchangedModel() {
+    connection.add(statements(0, 10), GRAPH);
+    ContextReplacer replacer =
+        new ContextReplacer(record("add", connection), GRAPH, this::recordedWriter);
+    replace(replacer, statements(0, 10));
+    assertEquals(0, replacer.getAddedStatements());
+    assertEquals(0, replacer.getRemovedStatements());
+    assertEquals(10, replacer.getUnchangedStatements());
+    assertEquals(List.of(), commits);
+  }
+
+  /** The store never holds the old and the new statements side by side */
+  @Test
+  public void removesBeforeAdding() {
+    connection.add(statements(0, 10), GRAPH);
+    ContextReplacer replacer =
+        new ContextReplacer(record("add", connection), GRAPH, this::recordedWriter);
+    replacer.setBatchStatements(2);
+    replace(replacer, statements(5, 15));
+    assertEquals(List.of("remove", "remove", "remove", "add", "add", "add"), commits);
+    assertEquals(10, connection.size(GRAPH));
+  }
+
+  @Test
+  public void replacesStatementsWithBlankNodes() {
+    Statement blank =
+        VF.createStatement(
+            VF.createBNode("b1"), VF.createIRI("http://example.org/p"), VF.createLiteral("b"));
+    List<Statement> model = statements(0, 2);
+    model.add(blank);
+    connection.add(model, GRAPH);
+    ContextReplacer replacer = new ContextReplacer(connection, GRAPH);
+    replace(replacer, model);
+    assertEquals(1, replacer.getAddedStatements());
+    assertEquals(1, replacer.getRemovedStatements());
+    assertEquals(3, connection.size(GRAPH));
+  }
+
+  @Test
+  public void needsANamedGraph() {
+    assertThrows(IllegalArgumentException.class, () -> new ContextReplacer(connection, null));
+  }
+
+  private static void replace(ContextReplacer replacer, List<Statement> statements) {
+    replacer.startRDF();
+    for (Statement st : statements) {
+      replacer.handleStatement(st);
+    }
+    replacer.endRDF();
+  }
+
+  private RepositoryConnection recordedWriter() {
+    return record("remove", repository.getConnection());
+  }
+
+  /** Wraps a connection that adds the name to {@link #commits} on each commit */
+  private RepositoryConnection record(String name, RepositoryConnection delegate) {
+    return new RepositoryConnectionWrapper(repository, delegate) {
+      @Override
+      public void commit() {
+        super.commit();
+        commits.add(name);
+      }
+    };
+  }
+}
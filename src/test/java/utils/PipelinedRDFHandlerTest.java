@@ -0,0 +1,190 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static utils.BatchLoaderTest.statements;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.junit.jupiter.api.Test;
+
+/** Passes events from the test thread to the consumer thread of a pipeline. */
+public class PipelinedRDFHandlerTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @Test
+  public void deliversTheEventsInOrder() {
+    Events events = new Events();
+    List<Statement> statements = statements(0, 12);
+    try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(events, 3, 2)) {
+      pipeline.handleNamespace("a", "http://example.org/a#");
+      pipeline.startRDF();
+      for (Statement st : statements.subList(0, 10)) {
+        pipeline.handleStatement(st);
+      }
+      pipeline.handleNamespace("b", "http://example.org/b#");
+      pipeline.handleStatement(statements.get(10));
+      pipeline.handleStatement(statements.get(11));
+      pipeline.endRDF();
+    }
+    List<String> expected = new ArrayList<String>();
+    expected.add("startRDF");
+    expected.add("a");
+    for (Statement st : statements.subList(0, 10)) {
+      expected.add(st.getSubject().stringValue());
+    }
+    expected.add("b");
+    expected.add(statements.get(10).getSubject().stringValue());
+    expected.add(statements.get(11).getSubject().stringValue());
+    expected.add("endRDF");
+    assertEquals(expected, events.events);
+    assertEquals(1, events.threads.size());
+    assertNotSame(Thread.currentThread(), events.threads.get(0));
+  }
+
+  /** The events before the start must not fill a queue that has no consumer yet */
+  @Test
+  public void passesEventsThroughASmallQueue() {
+    Events events = new Events();
+    assertTimeoutPreemptively(
+        TIMEOUT,
+        () -> {
+          try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(events, 1, 1)) {
+            for (int i = 0; i < 8; i++) {
+              pipeline.handleNamespace("p" + i, "http://example.org/" + i + "#");
+            }
+            pipeline.startRDF();
+            for (Statement st : statements(0, 100)) {
+              pipeline.handleStatement(st);
+            }
+            pipeline.endRDF();
+          }
+        });
+    assertEquals("startRDF", events.events.get(0));
+    assertEquals(1 + 8 + 100 + 1, events.events.size());
+  }
+
+  @Test
+  public void reportsAFailureOfTheConsumerToTheProducer() {
+    IllegalStateException failure = new IllegalStateException("consumer failed");
+    Events events =
+        new Events() {
+          @Override
+          public void handleStatement(Statement st) {
+            super.handleStatement(st);
+            if (events.size() == 5) {
+              throw failure;
+            }
+          }
+        };
+    assertTimeoutPreemptively(
+        TIMEOUT,
+        () -> {
+          try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(events, 2, 1)) {
+            pipeline.startRDF();
+            IllegalStateException thrown =
+                assertThrows(
+                    IllegalStateException.class,
+                    () -> {
+                      for (Statement st : statements(0, 10_000)) {
+                        pipeline.handleStatement(st);
+                      }
+                      pipeline.endRDF();
+                    });
+            assertSame(failure, thrown);
+          }
+        });
+    assertEquals(5, events.events.size());
+    assertFalse(events.events.contains("endRDF"));
+  }
+
+  /** After a failure of the producer the queued statements are dropped, not committed */
+  @Test
+  public void dropsTheQueuedStatementsOnClose() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Events events =
+        new Events() {
+          @Override
+          public void handleStatement(Statement st) {
+            super.handleStatement(st);
+            entered.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        };
+    PipelinedRDFHandler pipeline = new PipelinedRDFHandler(events, 10, 8);
+    pipeline.startRDF();
+    for (Statement st : statements(0, 50)) {
+      pipeline.handleStatement(st);
+    }
+    // the producer fails here, the consumer is still at the first statement
+    entered.await();
+    Thread closing = new Thread(pipeline::close);
+    closing.start();
+    // close waits for the consumer once it has dropped the queued statements
+    while (closing.getState() != Thread.State.WAITING && closing.isAlive()) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    closing.join(TIMEOUT.toMillis());
+    assertFalse(closing.isAlive());
+    String first = statements(0, 1).get(0).getSubject().stringValue();
+    assertEquals(List.of("startRDF", first), events.events);
+  }
+
+  @Test
+  public void startsOnce() {
+    try (PipelinedRDFHandler pipeline = new PipelinedRDFHandler(new Events())) {
+      pipeline.startRDF();
+      assertThrows(IllegalStateException.class, pipeline::startRDF);
+    }
+  }
+
+  /** Records the events and the threads they are handled on */
+  private static class Events extends AbstractRDFHandler {
+
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+    private void record(String event) {
+      events.add(event);
+      if (!threads.contains(Thread.currentThread())) {
+        threads.add(Thread.currentThread());
+      }
+    }
+
+    @Override
+    public void startRDF() {
+      record("startRDF");
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) {
+      record(prefix);
+    }
+
+    @Override
+    public void handleStatement(Statement st) {
+      record(st.getSubject().stringValue());
+    }
+
+    @Override
+    public void endRDF() {
+      record("endRDF");
+    }
+  }
+}
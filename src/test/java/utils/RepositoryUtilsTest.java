@@ -0,0 +1,108 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static utils.BatchLoaderTest.GRAPH;
+import static utils.BatchLoaderTest.statements;
+
+import java.io.File;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Checks when the cached embedded repositories are shut down. */
+public class RepositoryUtilsTest {
+
+  @TempDir File dataDir;
+
+  private RepositoryUtils repositoryUtils;
+
+  @BeforeEach
+  public void setUp() {
+    repositoryUtils = new RepositoryUtils(dataDir);
+    repositoryUtils.createRepository("test");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    repositoryUtils.shutDown();
+  }
+
+  @Test
+  public void keepsTheRepositoryWhileConnectionsAreOpen() {
+    repositoryUtils.setIdleTimeout(0);
+    RepositoryConnection first = repositoryUtils.getConnection("test");
+    RepositoryConnection second = repositoryUtils.getConnection("test");
+    Repository repository = first.getRepository();
+    assertSame(repository, second.getRepository());
+
+    first.close();
+    assertTrue(repository.isInitialized());
+    second.add(statements(0, 3), GRAPH);
+    assertEquals(3, second.size(GRAPH));
+
+    second.close();
+    assertFalse(repository.isInitialized());
+    // the next connection initializes it again
+    try (RepositoryConnection third = repositoryUtils.getConnection("test")) {
+      assertNotSame(repository, third.getRepository());
+      assertEquals(3, third.size(GRAPH));
+    }
+  }
+
+  @Test
+  public void releasesAConnectionOnce() {
+    repositoryUtils.setIdleTimeout(0);
+    RepositoryConnection first = repositoryUtils.getConnection("test");
+    RepositoryConnection second = repositoryUtils.getConnection("test");
+    Repository repository = first.getRepository();
+    first.close();
+    first.close();
+    assertTrue(repository.isInitialized());
+    second.close();
+    assertFalse(repository.isInitialized());
+  }
+
+  @Test
+  public void keepsAnIdleRepositoryForTheTimeout() {
+    Repository repository;
+    try (RepositoryConnection connection = repositoryUtils.getConnection("test")) {
+      repository = connection.getRepository();
+    }
+    assertTrue(repository.isInitialized());
+    try (RepositoryConnection connection = repositoryUtils.getConnection("test")) {
+      assertSame(repository, connection.getRepository());
+    }
+    repositoryUtils.setIdleTimeout(0);
+    assertFalse(repository.isInitialized());
+  }
+
+  @Test
+  public void keepsRepositoriesReturnedByGetRepository() {
+    repositoryUtils.setIdleTimeout(0);
+    Repository repository = repositoryUtils.getRepository("test");
+    assertSame(repository, repositoryUtils.getRepository("test"));
+    try (RepositoryConnection connection = repositoryUtils.getConnection("test")) {
+      assertSame(repository, connection.getRepository());
+    }
+    assertTrue(repository.isInitialized());
+    try (RepositoryConnection connection = repository.getConnection()) {
+      assertEquals(0, connection.size());
+    }
+  }
+
+  @Test
+  public void returnsNothingForUnknownRepositories() {
+    assertTrue(repositoryUtils.exists("test"));
+    assertFalse(repositoryUtils.exists("unknown"));
+    assertNull(repositoryUtils.getConnection("unknown"));
+    assertNull(repositoryUtils.getRepository("unknown"));
+  }
+}